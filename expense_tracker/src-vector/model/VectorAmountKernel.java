@@ -0,0 +1,61 @@
+package model;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code VectorAmountKernel} runs the {@code AmountKernel} loops with the
+ * Vector API, several amounts per instruction: 4 with AVX2 and 8 with
+ * AVX-512, as the amounts are {@code long} cents. The amounts past the last
+ * full vector are handled one at a time.
+ * <p>
+ * It needs the {@code jdk.incubator.vector} module, so it lives in the
+ * separate {@code src-vector} source set; {@code AmountKernel} loads it by
+ * name and falls back to the {@code ScalarAmountKernel} without it.
+ */
+final class VectorAmountKernel implements AmountKernel {
+
+  private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+  VectorAmountKernel() {
+    // Fails here, and not in the middle of a scan, if the module is missing
+    if (SPECIES.length() > 64 || 64 % SPECIES.length() != 0) {
+      throw new UnsupportedOperationException("Unsupported vector length: " + SPECIES.length());
+    }
+  }
+
+  @Override
+  public long sum(long[] amounts, int length) {
+    LongVector partialSums = LongVector.zero(SPECIES);
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+      partialSums = partialSums.add(LongVector.fromArray(SPECIES, amounts, i));
+    }
+    long total = partialSums.reduceLanes(VectorOperators.ADD);
+    for (; i < length; i++) {
+      total += amounts[i];
+    }
+    return total;
+  }
+
+  @Override
+  public void matchBetween(long[] amounts, int length, long minCents, long maxCents, long[] mask) {
+    int words = (length + 63) >>> 6;
+    for (int word = 0; word < words; word++) {
+      mask[word] = 0;
+    }
+    int i = 0;
+    // The lane count divides 64, so the lanes of one vector fall in one word
+    for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+      LongVector vector = LongVector.fromArray(SPECIES, amounts, i);
+      long lanes = vector.compare(VectorOperators.GE, minCents)
+          .and(vector.compare(VectorOperators.LE, maxCents)).toLong();
+      mask[i >>> 6] |= lanes << i;
+    }
+    for (; i < length; i++) {
+      long amount = amounts[i];
+      mask[i >>> 6] |= (amount >= minCents & amount <= maxCents ? 1L : 0L) << i;
+    }
+  }
+}
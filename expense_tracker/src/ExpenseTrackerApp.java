@@ -4,6 +4,7 @@ import model.ExpenseTrackerModel;
 import view.ExpenseTrackerView;
 import model.Filter.AmountFilter;
 import model.Filter.CategoryFilter;
+import model.Filter.QueryFilter;
 
 public class ExpenseTrackerApp {
 
@@ -66,6 +67,43 @@ public class ExpenseTrackerApp {
       }
     });
 
+    // Add action listener to the "Filter by Query" button
+    view.addApplyQueryFilterListener(e -> {
+      try {
+        String queryFilterInput = view.getQueryFilterInput();
+        if (queryFilterInput != null && !queryFilterInput.trim().isEmpty()) {
+          controller.setFilter(QueryFilter.parse(queryFilterInput));
+          controller.applyFilter();
+        }
+      } catch (IllegalArgumentException exception) {
+        JOptionPane.showMessageDialog(view, exception.getMessage());
+        view.toFront();
+      }
+    });
+
+    // Add action listener to the "Top Expenses" button
+    view.addTopKListener(e -> {
+      String topKInput = view.getTopKInput();
+      if (topKInput == null || topKInput.trim().isEmpty()) {
+        return;
+      }
+      String[] parts = topKInput.trim().split("\\s+", 2);
+      try {
+        int k = Integer.parseInt(parts[0]);
+        QueryFilter filter = (parts.length > 1) ? QueryFilter.parse(parts[1]) : null;
+        if (!controller.highlightTopK(k, filter)) {
+          JOptionPane.showMessageDialog(view, "The number of expenses must be positive");
+          view.toFront();
+        }
+      } catch (NumberFormatException exception) {
+        JOptionPane.showMessageDialog(view, "Invalid number of expenses");
+        view.toFront();
+      } catch (IllegalArgumentException exception) {
+        JOptionPane.showMessageDialog(view, exception.getMessage());
+        view.toFront();
+      }
+    });
+
     // Add action listener to the "Undo" button
     view.addUndoButtonListener(e -> {
       int selectedRowIndex = view.getSelectedRowIndex();
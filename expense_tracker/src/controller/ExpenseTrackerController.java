@@ -2,7 +2,7 @@ package controller;
 
 import view.ExpenseTrackerView;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.swing.JOptionPane;
@@ -79,6 +79,37 @@ public class ExpenseTrackerController {
     return true;
   }
 
+  /**
+   * Adds a batch of transactions, for example an imported bank history.
+   * Calls the model once, so the observers are notified once for the whole
+   * batch instead of once per transaction.
+   * 
+   * @param transactions the transactions to add
+   * @return true if all transactions were added, false (and nothing is added)
+   *         if any of them is invalid
+   */
+  public boolean addTransactions(Collection<Transaction> transactions) {
+    if (transactions == null) {
+      return false;
+    }
+    for (Transaction t : transactions) {
+      if (t == null) {
+        return false;
+      }
+      if (!InputValidation.isValidAmount(t.getAmount()) || !InputValidation.isValidCategory(t.getCategory())) {
+        return false;
+      }
+    }
+
+    try {
+      model.addTransactions(transactions);
+    } catch (IllegalArgumentException e) {
+      // For example, a transaction that is already in the model
+      return false;
+    }
+    return true;
+  }
+
   /**
    * This method is called when the user clicks the "Apply Category Filter"
    * button.
@@ -88,17 +119,10 @@ public class ExpenseTrackerController {
   public void applyFilter() {
     // null check for filter
     if (filter != null) {
-      // Use the Strategy class to perform the desired filtering
-      List<Transaction> transactions = model.getTransactions();
-      List<Transaction> filteredTransactions = filter.filter(transactions);
-      List<Integer> rowIndexes = new ArrayList<>();
-      for (Transaction t : filteredTransactions) {
-        int rowIndex = transactions.indexOf(t);
-        if (rowIndex != -1) {
-          rowIndexes.add(rowIndex);
-        }
-      }
-      model.setMatchedFilterIndices(rowIndexes);
+      // Use the Strategy class to perform the desired filtering. The filter
+      // returns the matching positions directly, so no transaction has to be
+      // looked up again in the list, and the model keeps them up to date.
+      model.applyFilter(filter);
     } else {
       JOptionPane.showMessageDialog(view, "No filter applied");
       view.toFront();
@@ -106,6 +130,24 @@ public class ExpenseTrackerController {
 
   }
 
+  /**
+   * This method is called when the user clicks the "Top Expenses" button.
+   * Calls the model to highlight the k largest transactions that match the
+   * filter
+   * 
+   * @param k the number of transactions to highlight
+   * @param filter the filter, or null for all transactions
+   * @return true if the transactions were highlighted, false if k is not
+   *         positive
+   */
+  public boolean highlightTopK(int k, TransactionFilter filter) {
+    if (k <= 0) {
+      return false;
+    }
+    model.highlightTopK(k, filter);
+    return true;
+  }
+
   /**
    * This method is called when the user clicks the undo button.
    * Calls the model to remove the transaction at the given index
@@ -115,9 +157,9 @@ public class ExpenseTrackerController {
    * @return true if the transaction was removed, false otherwise
    */
   public boolean undoTransaction(int rowIndex) {
-    if (rowIndex >= 0 && rowIndex < model.getTransactions().size()) {
-      Transaction removedTransaction = model.getTransactions().get(rowIndex);
-      model.removeTransaction(removedTransaction);
+    if (rowIndex >= 0 && rowIndex < model.getTransactionCount()) {
+      // Remove by id, so that neither the lookup nor the removal scans the list
+      model.removeTransaction(model.getTransactionId(rowIndex));
       return true;
     }
 
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * The {@code AmountKernel} runs the tight loops over one chunk of the amount
+ * column: the sum, and the comparison of every amount with a range, which
+ * gives a bit mask of the matching offsets.
+ * <p>
+ * {@link #INSTANCE} is the {@code VectorAmountKernel} when the
+ * {@code jdk.incubator.vector} module is there (it is compiled from the
+ * separate {@code src-vector} source set, see {@code build.xml}, and run with
+ * {@code --add-modules jdk.incubator.vector}), and the
+ * {@link ScalarAmountKernel} otherwise. Setting the system property
+ * {@code expensetracker.vector} to {@code false} always selects the scalar
+ * kernel.
+ */
+interface AmountKernel {
+
+  AmountKernel INSTANCE = Loader.load();
+
+  /**
+   * @param amounts an amount column, in cents
+   * @param length the number of amounts to sum
+   * @return the sum of amounts[0..length)
+   */
+  long sum(long[] amounts, int length);
+
+  /**
+   * Sets bit i of the mask (bit i % 64 of word i / 64) if amounts[i] is
+   * between the bounds, both inclusive, and clears it otherwise, for every i
+   * below length. The words past length are left alone.
+   *
+   * @param amounts an amount column, in cents
+   * @param length the number of amounts to compare
+   * @param minCents the lowest amount, in cents
+   * @param maxCents the highest amount, in cents
+   * @param mask the mask to fill, with at least (length + 63) / 64 words
+   */
+  void matchBetween(long[] amounts, int length, long minCents, long maxCents, long[] mask);
+
+  // Chooses the kernel once, when it is first used
+  final class Loader {
+
+    private Loader() {
+    }
+
+    static AmountKernel load() {
+      if (!Boolean.parseBoolean(System.getProperty("expensetracker.vector", "true"))) {
+        return new ScalarAmountKernel();
+      }
+      try {
+        return (AmountKernel) Class.forName("model.VectorAmountKernel").getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // Not compiled, or the incubator module was not added at run time
+        return new ScalarAmountKernel();
+      }
+    }
+  }
+}
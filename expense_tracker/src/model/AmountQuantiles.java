@@ -0,0 +1,108 @@
+package model;
+
+/**
+ * The {@code AmountQuantiles} keep one {@code QuantileSketch} of the amounts,
+ * in cents, per category and one of all transactions, so that the median
+ * and other percentiles never need a sort of the amounts.
+ * <p>
+ * An add updates two sketches in O(1) amortized. A sketch cannot delete a
+ * value, so a remove only marks the sketches of its category and of all
+ * transactions as stale; the stale sketches are rebuilt from the amount and
+ * category columns, in one pass, by the next query that needs one of them.
+ * A burst of removals therefore costs one scan, not one per removal. The
+ * store keeps the sketches up to date as one of its indexes.
+ */
+class AmountQuantiles implements TransactionIndex {
+
+  // The sketch of every category together, after the category ordinals
+  private static final int ALL = CategoryDictionary.MAX_CATEGORIES;
+
+  private final QuantileSketch[] sketches = new QuantileSketch[ALL + 1];
+  private final boolean[] stale = new boolean[ALL + 1];
+  private boolean anyStale;
+
+  @Override
+  public void added(int slot, Transaction t) {
+    add(CategoryDictionary.intern(t.getCategory()), t.getAmountCents());
+  }
+
+  @Override
+  public void removed(int slot, Transaction t) {
+    stale[CategoryDictionary.intern(t.getCategory())] = true;
+    stale[ALL] = true;
+    anyStale = true;
+  }
+
+  @Override
+  public void reset(TransactionSnapshot transactions) {
+    for (int row = 0; row <= ALL; row++) {
+      sketches[row] = null;
+      stale[row] = false;
+    }
+    anyStale = false;
+    TransactionSnapshot.Cursor cursor = transactions.cursor();
+    while (cursor.next()) {
+      add(cursor.categoryOrdinal(), cursor.amountCents());
+    }
+  }
+
+  /**
+   * @param category the category, in any case, or null for all categories
+   * @param transactions the current snapshot of the store, to rebuild a
+   *          sketch after removals
+   * @return the sketch of the amounts of the category, to be read only
+   */
+  QuantileSketch sketch(String category, TransactionSnapshot transactions) {
+    int row = ALL;
+    if (category != null) {
+      row = CategoryDictionary.ordinalOf(category);
+      if (row == CategoryDictionary.UNKNOWN) {
+        return new QuantileSketch();
+      }
+    }
+    if (anyStale) {
+      rebuildStale(transactions);
+    }
+    return (sketches[row] == null) ? new QuantileSketch() : sketches[row];
+  }
+
+  // Rebuilds every stale sketch in one pass over the columns
+  private void rebuildStale(TransactionSnapshot transactions) {
+    for (int row = 0; row <= ALL; row++) {
+      if (stale[row]) {
+        sketches[row] = null;
+      }
+    }
+    TransactionSnapshot.Cursor cursor = transactions.cursor();
+    while (cursor.next()) {
+      int ordinal = cursor.categoryOrdinal();
+      if (stale[ordinal]) {
+        update(ordinal, cursor.amountCents());
+      }
+      if (stale[ALL]) {
+        update(ALL, cursor.amountCents());
+      }
+    }
+    for (int row = 0; row <= ALL; row++) {
+      stale[row] = false;
+    }
+    anyStale = false;
+  }
+
+  private void add(int ordinal, long cents) {
+    // A stale sketch is rebuilt from the columns, which hold this amount too
+    if (!stale[ordinal]) {
+      update(ordinal, cents);
+    }
+    if (!stale[ALL]) {
+      update(ALL, cents);
+    }
+  }
+
+  private void update(int row, long cents) {
+    if (sketches[row] == null) {
+      sketches[row] = new QuantileSketch();
+    }
+    sketches[row].update(cents);
+  }
+}
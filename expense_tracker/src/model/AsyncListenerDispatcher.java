@@ -0,0 +1,111 @@
+package model;
+
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The {@code AsyncListenerDispatcher} delivers the events of an
+ * {@code ExpenseTrackerModel} to its listeners on an {@code Executor} instead
+ * of on the thread that changed the model.
+ * <p>
+ * Every listener has its own mailbox that holds at most one pending event.
+ * If a new event arrives before the listener has taken the previous one, both
+ * are merged (see {@code ExpenseTrackerModelEvent.merge}), so a slow listener
+ * receives one event for the latest state instead of a backlog of stale ones,
+ * and it never blocks the model or the other listeners. Listeners that are
+ * Swing (AWT) components are always called on the event dispatch thread.
+ */
+class AsyncListenerDispatcher {
+
+  private final ExpenseTrackerModel model;
+  private final Executor executor;
+  private final Map<ExpenseTrackerModelListener, Mailbox> mailboxes =
+      new IdentityHashMap<ExpenseTrackerModelListener, Mailbox>();
+
+  AsyncListenerDispatcher(ExpenseTrackerModel model, Executor executor) {
+    this.model = model;
+    this.executor = executor;
+  }
+
+  /**
+   * Queues the event for the given listener.
+   *
+   * @param listener the listener to notify
+   * @param event the event, with the state of the model already attached
+   */
+  void post(ExpenseTrackerModelListener listener, ExpenseTrackerModelEvent event) {
+    Mailbox mailbox;
+    synchronized (mailboxes) {
+      mailbox = mailboxes.get(listener);
+      if (mailbox == null) {
+        mailbox = new Mailbox(listener);
+        mailboxes.put(listener, mailbox);
+      }
+    }
+    mailbox.post(event);
+  }
+
+  private class Mailbox implements Runnable {
+
+    private final ExpenseTrackerModelListener listener;
+    private final Executor target;
+    private ExpenseTrackerModelEvent pending;
+    private boolean scheduled;
+
+    Mailbox(ExpenseTrackerModelListener listener) {
+      this.listener = listener;
+      // Swing components must only be touched on the event dispatch thread
+      this.target = (listener instanceof Component) ? EventQueue::invokeLater : executor;
+    }
+
+    void post(ExpenseTrackerModelEvent event) {
+      boolean schedule;
+      synchronized (this) {
+        if (pending == null) {
+          pending = event;
+        } else {
+          List<ExpenseTrackerModelEvent> events = new ArrayList<ExpenseTrackerModelEvent>(2);
+          events.add(pending);
+          events.add(event);
+          ExpenseTrackerModelEvent merged = ExpenseTrackerModelEvent.merge(model, events);
+          // The merged event shows the latest state
+          merged.attachStateOf(event);
+          pending = merged;
+        }
+        schedule = !scheduled;
+        scheduled = true;
+      }
+      if (schedule) {
+        target.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        ExpenseTrackerModelEvent event;
+        synchronized (this) {
+          event = pending;
+          pending = null;
+          if (event == null) {
+            scheduled = false;
+            return;
+          }
+        }
+        try {
+          listener.modelChanged(event);
+        } catch (RuntimeException e) {
+          // A failing listener must not stop the delivery to the others, so
+          // its exception goes to the handler of the thread instead of up
+          Thread thread = Thread.currentThread();
+          thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code CategoryDictionary} maps category names to small integer
+ * ordinals so that the {@code TransactionStore} can keep the category column
+ * as a {@code byte[]} instead of one {@code String} reference per row.
+ * <p>
+ * Categories are compared ignoring case (the same way as the
+ * {@code CategoryFilter}), so "Food" and "food" share one ordinal.
+ * Ordinals are assigned on first use and never change, which means that a
+ * filter can look up its ordinal once and then compare bytes while scanning.
+ */
+public final class CategoryDictionary {
+
+  /**
+   * The number of distinct ordinals that fit in the {@code byte} column.
+   */
+  public static final int MAX_CATEGORIES = 256;
+
+  /**
+   * Returned by {@link #ordinalOf(String)} for a category that has never been
+   * stored.
+   */
+  public static final int UNKNOWN = -1;
+
+  // Copied on write, so that ordinalOf reads it without a lock; the few
+  // categories are interned once each
+  private static volatile Map<String, Integer> ordinals = new HashMap<String, Integer>();
+  private static final String[] names = new String[MAX_CATEGORIES];
+  private static int count = 0;
+
+  private CategoryDictionary() {
+  }
+
+  /**
+   * Returns the ordinal of the given category, assigning a new one if the
+   * category has not been seen before.
+   *
+   * @param category the category name
+   * @return the ordinal, between 0 (inclusive) and {@link #MAX_CATEGORIES}
+   *         (exclusive)
+   */
+  public static synchronized int intern(String category) {
+    String key = normalize(category);
+    Integer ordinal = ordinals.get(key);
+    if (ordinal != null) {
+      return ordinal;
+    }
+    if (count == MAX_CATEGORIES) {
+      throw new IllegalStateException("Too many distinct categories.");
+    }
+    names[count] = key;
+    Map<String, Integer> grown = new HashMap<String, Integer>(ordinals);
+    grown.put(key, count);
+    ordinals = grown;
+    return count++;
+  }
+
+  /**
+   * Returns the ordinal of the given category without assigning a new one.
+   * Takes no lock, so filters may call it for every row from any thread.
+   *
+   * @param category the category name
+   * @return the ordinal, or {@link #UNKNOWN} if no transaction ever used it
+   */
+  public static int ordinalOf(String category) {
+    Integer ordinal = ordinals.get(normalize(category));
+    return (ordinal == null) ? UNKNOWN : ordinal;
+  }
+
+  /**
+   * Returns the (lower case) category name of the given ordinal.
+   *
+   * @param ordinal an ordinal returned by {@link #intern(String)}
+   * @return the category name
+   */
+  public static synchronized String nameOf(int ordinal) {
+    if (ordinal < 0 || ordinal >= count) {
+      throw new IllegalArgumentException("Unknown category ordinal: " + ordinal);
+    }
+    return names[ordinal];
+  }
+
+  /**
+   * Converts the ordinal stored in a {@code byte} column back to an int.
+   *
+   * @param stored the stored byte
+   * @return the ordinal
+   */
+  public static int fromByte(byte stored) {
+    return stored & 0xFF;
+  }
+
+  private static String normalize(String category) {
+    if (category == null) {
+      throw new IllegalArgumentException("The category must be non-null.");
+    }
+    return category.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The {@code CategoryIndex} keeps, for every category, the slots of its
+ * transactions in a primitive {@code int} list, so that the transactions of
+ * one category are found without looking at the others.
+ * <p>
+ * Adding a transaction appends its slot, which keeps every list sorted. A
+ * removal only marks the slot as removed; once half of a list is removed
+ * slots, the list is rewritten without them. A lookup therefore costs
+ * O(matches), whatever the number of transactions.
+ */
+public final class CategoryIndex implements TransactionIndex {
+
+  private final int[][] slots = new int[CategoryDictionary.MAX_CATEGORIES][];
+  private final int[] lengths = new int[CategoryDictionary.MAX_CATEGORIES];
+  private final int[] removedCounts = new int[CategoryDictionary.MAX_CATEGORIES];
+  private final BitSet removedSlots = new BitSet();
+
+  @Override
+  public void added(int slot, Transaction t) {
+    append(CategoryDictionary.intern(t.getCategory()), slot);
+  }
+
+  @Override
+  public void removed(int slot, Transaction t) {
+    int ordinal = CategoryDictionary.intern(t.getCategory());
+    removedSlots.set(slot);
+    removedCounts[ordinal]++;
+    if (removedCounts[ordinal] * 2 >= lengths[ordinal]) {
+      purge(ordinal);
+    }
+  }
+
+  @Override
+  public void reset(TransactionSnapshot transactions) {
+    Arrays.fill(lengths, 0);
+    Arrays.fill(removedCounts, 0);
+    removedSlots.clear();
+    TransactionSnapshot.Cursor cursor = transactions.cursor();
+    while (cursor.next()) {
+      append(cursor.categoryOrdinal(), cursor.slot());
+    }
+  }
+
+  /**
+   * @param category the category, in any case
+   * @return the number of transactions in the category
+   */
+  public int countOf(String category) {
+    int ordinal = CategoryDictionary.ordinalOf(category);
+    return (ordinal == CategoryDictionary.UNKNOWN) ? 0 : lengths[ordinal] - removedCounts[ordinal];
+  }
+
+  /**
+   * Finds the positions of the transactions of the given category.
+   *
+   * @param category the category, in any case
+   * @param transactions the current snapshot of the store
+   * @return the positions, in ascending order
+   */
+  public int[] positionsOf(String category, TransactionSnapshot transactions) {
+    int ordinal = CategoryDictionary.ordinalOf(category);
+    if (ordinal == CategoryDictionary.UNKNOWN || lengths[ordinal] == 0) {
+      return new int[0];
+    }
+    int[] live = new int[lengths[ordinal] - removedCounts[ordinal]];
+    int count = 0;
+    int[] list = slots[ordinal];
+    for (int i = 0; i < lengths[ordinal]; i++) {
+      if (removedCounts[ordinal] == 0 || !removedSlots.get(list[i])) {
+        live[count++] = list[i];
+      }
+    }
+    return transactions.positionsOfSlots(live, count);
+  }
+
+  private void append(int ordinal, int slot) {
+    int[] list = slots[ordinal];
+    if (list == null) {
+      list = slots[ordinal] = new int[16];
+    } else if (lengths[ordinal] == list.length) {
+      list = slots[ordinal] = Arrays.copyOf(list, list.length * 2);
+    }
+    list[lengths[ordinal]++] = slot;
+  }
+
+  // Rewrites the list of the category without its removed slots
+  private void purge(int ordinal) {
+    int[] list = slots[ordinal];
+    int length = 0;
+    for (int i = 0; i < lengths[ordinal]; i++) {
+      if (removedSlots.get(list[i])) {
+        // No other list holds this slot
+        removedSlots.clear(list[i]);
+      } else {
+        list[length++] = list[i];
+      }
+    }
+    lengths[ordinal] = length;
+    removedCounts[ordinal] = 0;
+  }
+}
@@ -1,8 +1,20 @@
 package model;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import model.Filter.AmountIndex;
+import model.Filter.IncrementalFilter;
+import model.Filter.TimeIndex;
+import model.Filter.TransactionFilter;
 
 /**
  * The {@code ExpenseTrackerModel} class represents the Model in the MVC
@@ -16,27 +28,123 @@ import java.util.List;
  * The {@code ExpenseTrackerModel} class maintains a list of transactions and a
  * list of matched filter indices. It provides
  * methods for adding transactions, applying filters, and managing listeners.
+ * The transactions are kept column by column in a {@code TransactionStore}, so
+ * that the filters and the totals can scan primitive arrays. The totals per
+ * category are maintained on every change and available from
+ * {@code getSummary} without a scan, and the filters find the transactions of
+ * a category, an amount range or a date range through the
+ * {@code CategoryIndex}, {@code AmountIndex} and {@code TimeIndex} instead of
+ * scanning.
  * <p>
  * When a transaction is added, removed, or a filter is applied, the model
  * updates the list of matched filter indices and then notifies
- * all registered listeners of the change. Each listener's {@code stateChanged}
- * method is called with a {@code ChangeEvent}
- * that contains this model as the source.
+ * all registered listeners of the change. Each listener's {@code modelChanged}
+ * method is called with an {@code ExpenseTrackerModelEvent}
+ * that contains this model and describes the changed rows.
+ * <p>
+ * Several changes can be grouped into a batch with {@code batch} (or
+ * {@code beginBatch} and {@code commitBatch}). The listeners are then notified
+ * once, when the outermost batch is committed, with one event that describes
+ * the whole batch. Rolling a batch back returns the model to the state it had
+ * when the batch began.
  */
 
 public class ExpenseTrackerModel {
 
+  // Enough for a user who switches between a few filters
+  private static final int DEFAULT_FILTER_CACHE_CAPACITY = 16;
+  // Below this many transactions, a top-k scan does not fork
+  private static final int PARALLEL_TOP_K_THRESHOLD = 1 << 16;
+
   // encapsulation - data integrity
-  private List<Transaction> transactions;
-  private List<Integer> matchedFilterIndices;
+  private TransactionStore transactions;
+  // Kept up to date by the store, for getSummary
+  private TransactionAggregates aggregates;
+  private TransactionRollups rollups;
+  private AmountQuantiles quantiles;
+  // The matched rows by slot, so that a removal does not shift them. The
+  // MatchTracker keeps them up to date while a filter is active.
+  private SlotBitmap matchedSlots;
+  // The filter whose matches are kept up to date, or null
+  private TransactionFilter activeFilter;
+  // The positions of the matched slots, computed when first asked for
+  private RowBitmap matchedRows;
+  // Set by the MatchTracker when a change of the transactions changed a match
+  private boolean matchesTouched;
+  // The matches of the filters applied lately
+  private final FilterResultCache filterCache = new FilterResultCache(DEFAULT_FILTER_CACHE_CAPACITY);
   private List<ExpenseTrackerModelListener> listeners = new ArrayList<ExpenseTrackerModelListener>();
 
+  // One savepoint per open batch, the innermost last
+  private List<BatchSavepoint> batches = new ArrayList<BatchSavepoint>();
+  // The events held back until the outermost batch is committed
+  private List<ExpenseTrackerModelEvent> pendingEvents = new ArrayList<ExpenseTrackerModelEvent>();
+  // Null while the listeners are notified synchronously
+  private AsyncListenerDispatcher dispatcher;
+
+  // The state of the model when a batch began
+  private static class BatchSavepoint {
+    final TransactionSnapshot transactions;
+    final SlotBitmap matchedSlots;
+    final TransactionFilter activeFilter;
+    final int pendingEventCount;
+
+    BatchSavepoint(TransactionSnapshot transactions, SlotBitmap matchedSlots, TransactionFilter activeFilter,
+        int pendingEventCount) {
+      this.transactions = transactions;
+      this.matchedSlots = matchedSlots;
+      this.activeFilter = activeFilter;
+      this.pendingEventCount = pendingEventCount;
+    }
+  }
+
+  // Keeps the matches of the active filter up to date, as the last index of
+  // the store: an added transaction is tested on its own, and a removed one
+  // only clears its slot.
+  private class MatchTracker implements TransactionIndex {
+
+    @Override
+    public void added(int slot, Transaction t) {
+      if (activeFilter instanceof IncrementalFilter && ((IncrementalFilter) activeFilter).matches(t)) {
+        matchedSlots.set(slot);
+        matchesTouched = true;
+      }
+    }
+
+    @Override
+    public void removed(int slot, Transaction t) {
+      matchesTouched |= matchedSlots.clear(slot);
+    }
+
+    @Override
+    public void reset(TransactionSnapshot all) {
+      // The slots were renumbered, so the matches are found again. The other
+      // indexes are already up to date, so the filter may use them.
+      matchedSlots = (activeFilter == null) ? new SlotBitmap() : slotsOf(activeFilter.matchingPositions(all), all);
+      matchedRows = null;
+      matchesTouched = true;
+    }
+  }
+
   // This is applying the Observer design pattern.
   // Specifically, this is the Observable class.
 
   public ExpenseTrackerModel() {
-    transactions = new ArrayList<Transaction>();
-    matchedFilterIndices = new ArrayList<Integer>();
+    transactions = new TransactionStore();
+    matchedSlots = new SlotBitmap();
+    matchedRows = RowBitmap.EMPTY;
+    // The store keeps its indexes up to date on every change
+    aggregates = new TransactionAggregates();
+    transactions.addIndex(aggregates);
+    rollups = new TransactionRollups();
+    transactions.addIndex(rollups);
+    quantiles = new AmountQuantiles();
+    transactions.addIndex(quantiles);
+    transactions.addIndex(new CategoryIndex());
+    transactions.addIndex(new AmountIndex());
+    transactions.addIndex(new TimeIndex());
+    transactions.addIndex(filterCache);
+    transactions.addIndex(new MatchTracker());
   }
 
   /**
@@ -54,11 +162,47 @@ public class ExpenseTrackerModel {
       throw new IllegalArgumentException("The new transaction must be non-null.");
     }
     this.transactions.add(t);
-    // The previous filter is no longer valid.
-    matchedFilterIndices.clear();
+    boolean matchesChanged = updateMatches(false);
 
     // Notify all registered observers about the change
-    stateChanged();
+    int row = this.transactions.size() - 1;
+    stateChanged(new ExpenseTrackerModelEvent.RowsInserted(this, row, row, matchesChanged));
+  }
+
+  /**
+   * Adds all of the given transactions, in iteration order, with a single
+   * notification of the subscribed observers (view) at the end. The whole
+   * batch is validated first, so either all transactions are added or none.
+   *
+   * @param newTransactions the transaction objects to add
+   */
+  public void addTransactions(Collection<Transaction> newTransactions) {
+    // Perform input validation
+    if (newTransactions == null) {
+      throw new IllegalArgumentException("The new transactions must be non-null.");
+    }
+    LongIntHashMap batchIds = new LongIntHashMap();
+    for (Transaction t : newTransactions) {
+      if (t == null) {
+        throw new IllegalArgumentException("The new transaction must be non-null.");
+      }
+      if (this.transactions.containsId(t.getId()) || batchIds.get(t.getId()) != LongIntHashMap.MISSING) {
+        throw new IllegalArgumentException("The new transaction must not already be in the model.");
+      }
+      batchIds.put(t.getId(), 0);
+    }
+    if (newTransactions.isEmpty()) {
+      return;
+    }
+    int firstRow = this.transactions.size();
+    for (Transaction t : newTransactions) {
+      this.transactions.add(t);
+    }
+    boolean matchesChanged = updateMatches(false);
+
+    // Notify all registered observers about the change, once for the batch
+    stateChanged(new ExpenseTrackerModelEvent.RowsInserted(this, firstRow, this.transactions.size() - 1,
+        matchesChanged));
   }
 
   /**
@@ -70,18 +214,225 @@ public class ExpenseTrackerModel {
    * @param transaction the transaction object to remove
    */
   public void removeTransaction(Transaction t) {
-    this.transactions.remove(t);
     System.out.println("removeTransaction called" + t.getAmount());
-    // The previous filter is no longer valid.
-    matchedFilterIndices.clear();
+    removeTransaction(t.getId());
+  }
+
+  /**
+   * Removes the transaction with the given id. The transaction is found in
+   * O(1) expected time; updating the positions of the later transactions
+   * costs one decrement per chunk of 4096 transactions after it.
+   * Impliments the observer pattern by notifying all subscribed observers if a
+   * transaction was removed.
+   *
+   * @param id the id of the transaction to remove
+   * @return true if a transaction with the given id was removed
+   */
+  public boolean removeTransaction(long id) {
+    int row = this.transactions.positionOf(id);
+    if (row == -1) {
+      return false;
+    }
+    Transaction removed = this.transactions.remove(id);
+    boolean matchesChanged = updateMatches(true);
 
     // Notify all registered observers about the change
-    stateChanged();
+    stateChanged(new ExpenseTrackerModelEvent.RowsRemoved(this, new int[] { row },
+        Collections.singletonList(removed), matchesChanged));
+    return true;
   }
 
-  public List<Transaction> getTransactions() {
+  /**
+   * @return the version of the model, increased by every change of the
+   *         transactions
+   */
+  public long getVersion() {
+    return transactions.version();
+  }
+
+  /**
+   * @return the number of transactions, without taking a snapshot
+   */
+  public int getTransactionCount() {
+    return transactions.size();
+  }
+
+  /**
+   * @param rowIndex the position of a transaction
+   * @return the id of the transaction at the given position
+   */
+  public long getTransactionId(int rowIndex) {
+    return transactions.get(rowIndex).getId();
+  }
+
+  /**
+   * Returns a read-only snapshot of the transactions. Besides the
+   * {@code List} methods, the snapshot gives access to the primitive columns.
+   * Taking a snapshot is O(1): it shares the stored chunks instead of copying
+   * them, and it does not see later changes of the model.
+   *
+   * @return the snapshot of the transactions
+   */
+  public TransactionSnapshot getTransactions() {
     // encapsulation - data integrity
-    return Collections.unmodifiableList(new ArrayList<>(transactions));
+    return transactions.snapshot();
+  }
+
+  /**
+   * Returns the count, total, mean, minimum and maximum of all transactions
+   * and of every category. The aggregates are maintained on every change, so
+   * this does not scan the transactions.
+   *
+   * @return the summary of the transactions
+   */
+  public TransactionSummary getSummary() {
+    return aggregates.summary();
+  }
+
+  /**
+   * Estimates a percentile of the amounts, for example the median (0.5) or
+   * the 90th percentile (0.9), of one category or of all transactions. The
+   * estimate comes from a sketch that is maintained on every add, see
+   * {@link QuantileSketch} for its error bound; after removals the sketch is
+   * rebuilt once, by the next query.
+   *
+   * @param category the category, in any case, or null for all categories
+   * @param fraction the rank, between 0 and 1 (both inclusive)
+   * @return the estimated amount, or 0 if there are no such transactions
+   */
+  public double getAmountQuantile(String category, double fraction) {
+    return Money.toAmount(quantiles.sketch(category, transactions.snapshot()).getQuantile(fraction));
+  }
+
+  /**
+   * Returns a copy of the sketch of the amounts, in cents, of one category or
+   * of all transactions. The copy can be merged with the sketches of other
+   * models, for example of other accounts or other years.
+   *
+   * @param category the category, in any case, or null for all categories
+   * @return the sketch, which does not see later changes of the model
+   */
+  public QuantileSketch getAmountSketch(String category) {
+    return quantiles.sketch(category, transactions.snapshot()).copy();
+  }
+
+  /**
+   * Returns the count and total of every day, week or month between two
+   * dates, for one category or for all of them. The rollups are maintained
+   * on every change, so this does not scan the transactions.
+   *
+   * @param period the period of the rollups
+   * @param category the category, in any case, or null for all categories
+   * @param from the first day to report
+   * @param to the last day to report (inclusive)
+   * @return one rollup per period from the one that holds {@code from} to the
+   *         one that holds {@code to}, in order, including the empty ones
+   */
+  public List<Rollup> getRollups(RollupPeriod period, String category, LocalDate from, LocalDate to) {
+    // Perform input validation
+    if (period == null || from == null || to == null) {
+      throw new IllegalArgumentException("The period and the dates must be non-null.");
+    }
+    if (from.isAfter(to)) {
+      throw new IllegalArgumentException("The first day must not be after the last day.");
+    }
+    return Collections.unmodifiableList(rollups.rollups(period, category, from, to));
+  }
+
+  /**
+   * @param period the period of the rollup
+   * @param category the category, in any case, or null for all categories
+   * @param day a day of the period
+   * @return the count and total of the day, week or month that holds the day
+   */
+  public Rollup getRollup(RollupPeriod period, String category, LocalDate day) {
+    return getRollups(period, category, day, day).get(0);
+  }
+
+  /**
+   * Returns the count and total of a sliding window of days that ends on the
+   * given day, such as the last 7 or 30 days. The window adds up the day
+   * rollups, so it costs one lookup per day of the window.
+   *
+   * @param category the category, in any case, or null for all categories
+   * @param lastDay the last day of the window (inclusive)
+   * @param days the length of the window, in days
+   * @return the rollup of the window
+   */
+  public Rollup getTrailingWindow(String category, LocalDate lastDay, int days) {
+    // Perform input validation
+    if (lastDay == null) {
+      throw new IllegalArgumentException("The last day must be non-null.");
+    }
+    if (days <= 0) {
+      throw new IllegalArgumentException("The number of days must be positive.");
+    }
+    return rollups.window(category, lastDay, days);
+  }
+
+  /**
+   * Finds the k transactions with the largest amounts that match the given
+   * filter, for example the 20 biggest expenses of a month or of a category.
+   * From the estimated number of matches, the amount index is walked from the
+   * largest amount down while many transactions match, only the matches from
+   * the other indexes are ranked while few do, and otherwise the amounts are
+   * scanned through a bounded heap in O(n log k), in parallel for large
+   * ledgers.
+   *
+   * @param k the number of transactions to find
+   * @param filter the filter, or null for all transactions
+   * @return the positions of the transactions, largest amount first; of
+   *         equal amounts the later transaction comes first
+   */
+  public int[] topK(int k, TransactionFilter filter) {
+    TransactionSnapshot all = transactions.snapshot();
+    k = checkedTopK(k, all);
+    int[] positions = TopKQuery.fromIndex(k, filter, all);
+    if (positions != null) {
+      return positions;
+    }
+    if (all.size() >= PARALLEL_TOP_K_THRESHOLD) {
+      return TopKQuery.scanParallel(k, filter, all, ForkJoinPool.commonPool());
+    }
+    return TopKQuery.scan(k, filter, all);
+  }
+
+  /**
+   * Like {@link #topK(int, TransactionFilter)}, but always scans the amounts
+   * on the given pool, one heap per part, and merges the heaps.
+   *
+   * @param k the number of transactions to find
+   * @param filter the filter, or null for all transactions
+   * @param pool the pool to scan on
+   * @return the positions of the transactions, largest amount first
+   */
+  public int[] topKParallel(int k, TransactionFilter filter, ForkJoinPool pool) {
+    if (pool == null) {
+      throw new IllegalArgumentException("The pool must be non-null.");
+    }
+    TransactionSnapshot all = transactions.snapshot();
+    return TopKQuery.scanParallel(checkedTopK(k, all), filter, all, pool);
+  }
+
+  /**
+   * Highlights the k transactions with the largest amounts that match the
+   * given filter, as the matched filter rows (see
+   * {@link #setMatchedFilterRows(RowBitmap)}).
+   *
+   * @param k the number of transactions to highlight
+   * @param filter the filter, or null for all transactions
+   */
+  public void highlightTopK(int k, TransactionFilter filter) {
+    int[] positions = topK(k, filter);
+    Arrays.sort(positions);
+    setMatchedFilterRows(RowBitmap.fromSorted(positions, positions.length));
+  }
+
+  private static int checkedTopK(int k, TransactionSnapshot all) {
+    if (k < 0) {
+      throw new IllegalArgumentException("The number of transactions must not be negative.");
+    }
+    return Math.min(k, all.size());
   }
 
   /**
@@ -104,18 +455,197 @@ public class ExpenseTrackerModel {
       }
     }
     // For encapsulation, copy in the input list
-    this.matchedFilterIndices.clear();
-    this.matchedFilterIndices.addAll(newMatchedFilterIndices);
+    setMatchedFilterRows(RowBitmap.fromCollection(newMatchedFilterIndices));
+  }
+
+  /**
+   * Sets the matched filter indices to the rows of the given bitmap, without
+   * going through a list of boxed indices, and notifies the observers. The
+   * rows are not tied to a filter, so the next change of the transactions
+   * clears them.
+   *
+   * @param rows the rows that match the filter
+   */
+  public void setMatchedFilterRows(RowBitmap rows) {
+    // Perform input validation
+    if (rows == null) {
+      throw new IllegalArgumentException("The matched filter rows must be non-null.");
+    }
+    if (rows.last() > this.transactions.size() - 1) {
+      throw new IllegalArgumentException(
+          "Each matched filter index must be between 0 (inclusive) and the number of transactions (exclusive).");
+    }
+    this.activeFilter = null;
+    this.matchedSlots = SlotBitmap.fromRows(rows, transactions.snapshot());
+    // The bitmap is immutable, so it does not need a copy
+    this.matchedRows = rows;
+
+    // Notify all registered observers about the change
+    stateChanged(new ExpenseTrackerModelEvent.FilterMatchesChanged(this));
+  }
+
+  /**
+   * Applies the given filter and keeps its matches up to date from then on:
+   * an added transaction is tested on its own if the filter is an
+   * {@code IncrementalFilter}, and a removed one only leaves the matches.
+   * Any other filter is applied again to all transactions after every change.
+   * Notifies the observers of the new matches.
+   * <p>
+   * The matches of the filters applied lately are cached, so applying a
+   * filter equal to one of them again does not filter the transactions.
+   *
+   * @param filter the filter to apply
+   */
+  public void applyFilter(TransactionFilter filter) {
+    // Perform input validation
+    if (filter == null) {
+      throw new IllegalArgumentException("The filter must be non-null.");
+    }
+    this.activeFilter = filter;
+    SlotBitmap cached = filterCache.slotsOf(filter);
+    if (cached != null) {
+      this.matchedSlots = cached;
+      this.matchedRows = filterCache.rowsOf(filter);
+    } else {
+      TransactionSnapshot all = transactions.snapshot();
+      BitSet positions = filter.matchingPositions(all);
+      this.matchedSlots = slotsOf(positions, all);
+      this.matchedRows = RowBitmap.fromBitSet(positions);
+      filterCache.put(filter, matchedSlots, matchedRows);
+    }
 
     // Notify all registered observers about the change
-    stateChanged();
+    stateChanged(new ExpenseTrackerModelEvent.FilterMatchesChanged(this));
+  }
+
+  /**
+   * @return the filter whose matches are kept up to date, or null
+   */
+  public TransactionFilter getActiveFilter() {
+    return activeFilter;
+  }
+
+  /**
+   * Sets how many filter results are cached. The least recently used results
+   * are evicted if there are more; 0 turns the cache off.
+   *
+   * @param capacity the highest number of cached results
+   */
+  public void setFilterCacheCapacity(int capacity) {
+    filterCache.setCapacity(capacity);
+  }
+
+  /**
+   * @return the hit, miss and eviction counters of the filter result cache
+   */
+  public FilterCacheStats getFilterCacheStats() {
+    return filterCache.stats();
   }
 
   public List<Integer> getMatchedFilterIndices() {
     // For encapsulation, copy out the output list
-    List<Integer> copyOfMatchedFilterIndices = new ArrayList<Integer>();
-    copyOfMatchedFilterIndices.addAll(this.matchedFilterIndices);
-    return copyOfMatchedFilterIndices;
+    return new ArrayList<Integer>(getMatchedFilterRows().toList());
+  }
+
+  /**
+   * @return the rows that match the filter, as a read-only compressed bitmap
+   */
+  public RowBitmap getMatchedFilterRows() {
+    if (matchedRows == null) {
+      matchedRows = matchedSlots.toRows(transactions.snapshot());
+    }
+    return matchedRows;
+  }
+
+  /**
+   * Runs the given operation as a batch: the listeners are notified once,
+   * after the operation, and if the operation throws an exception all of its
+   * changes are rolled back before the exception is passed on. Batches can be
+   * nested.
+   *
+   * @param operation the changes to make, for example a reconciliation of a
+   *                  bank statement
+   */
+  public void batch(Consumer<ExpenseTrackerModel> operation) {
+    beginBatch();
+    try {
+      operation.accept(this);
+    } catch (RuntimeException | Error e) {
+      rollbackBatch();
+      throw e;
+    }
+    commitBatch();
+  }
+
+  /**
+   * Begins a batch. Until the matching {@code commitBatch} the listeners are
+   * not notified. Every {@code beginBatch} must be followed by exactly one
+   * {@code commitBatch} or {@code rollbackBatch}.
+   */
+  public void beginBatch() {
+    // Taking the snapshot is O(1), so a savepoint is cheap
+    batches.add(new BatchSavepoint(transactions.snapshot(), matchedSlots.copy(), activeFilter,
+        pendingEvents.size()));
+  }
+
+  /**
+   * Commits the innermost batch. Committing the outermost batch notifies the
+   * listeners with one event for all the changes of the batch.
+   */
+  public void commitBatch() {
+    if (batches.isEmpty()) {
+      throw new IllegalStateException("There is no batch to commit.");
+    }
+    batches.remove(batches.size() - 1);
+    if (batches.isEmpty()) {
+      ExpenseTrackerModelEvent merged = ExpenseTrackerModelEvent.merge(this, pendingEvents);
+      pendingEvents.clear();
+      if (merged != null) {
+        stateChanged(merged);
+      }
+    }
+  }
+
+  /**
+   * Rolls the innermost batch back: the transactions and the matched filter
+   * indices return to the state they had when the batch began, and the changes
+   * of the batch are never announced to the listeners.
+   */
+  public void rollbackBatch() {
+    if (batches.isEmpty()) {
+      throw new IllegalStateException("There is no batch to roll back.");
+    }
+    BatchSavepoint savepoint = batches.remove(batches.size() - 1);
+    if (transactions.version() != savepoint.transactions.getVersion()) {
+      transactions.restore(savepoint.transactions);
+    }
+    // The saved matches share their blocks until one of them changes
+    matchedSlots = savepoint.matchedSlots;
+    activeFilter = savepoint.activeFilter;
+    matchedRows = null;
+    pendingEvents.subList(savepoint.pendingEventCount, pendingEvents.size()).clear();
+  }
+
+  /**
+   * @return true if a batch is open
+   */
+  public boolean isInBatch() {
+    return !batches.isEmpty();
+  }
+
+  /**
+   * Chooses how the listeners are notified. By default (or with a null
+   * executor) every listener is called synchronously, on the thread that
+   * changed the model. With an executor, the events are queued and delivered
+   * on it, and the events that a listener has not taken yet are merged into
+   * one. Listeners that are Swing components are then called on the event
+   * dispatch thread. Such listeners should read the state from the event
+   * ({@code ExpenseTrackerModelEvent.getTransactions()}), not from the model.
+   *
+   * @param executor the executor for the notifications, or null
+   */
+  public void setDispatchExecutor(Executor executor) {
+    this.dispatcher = (executor == null) ? null : new AsyncListenerDispatcher(this, executor);
   }
 
   /**
@@ -167,16 +697,87 @@ public class ExpenseTrackerModel {
 
   /**
    * Function that updates all the subscribed observers (view) with the new
-   * model (new state). For each listener, the update method is called with the
-   * new model (new state).
+   * model (new state), without saying what changed.
    * 
    */
   protected void stateChanged() {
+    stateChanged(new ExpenseTrackerModelEvent.Reset(this));
+  }
+
+  /**
+   * Function that updates all the subscribed observers (view) with the new
+   * model (new state). For each listener, the modelChanged method is called
+   * with the event, which by default calls the update method with the new
+   * model (new state).
+   *
+   * @param event what changed in the model
+   */
+  protected void stateChanged(ExpenseTrackerModelEvent event) {
     // For the Observable class, this is one of the methods.
-    //
-    // TODO
+    if (!batches.isEmpty()) {
+      // Held back until the batch is committed
+      pendingEvents.add(event);
+      return;
+    }
+    // All O(1): the snapshot shares the storage, the matched rows and the
+    // summary are immutable
+    event.attachState(transactions.snapshot(), matchedSlots.copy(), matchedRows, aggregates.summary());
     for (ExpenseTrackerModelListener listener : listeners) {
-      listener.update(this);
+      if (dispatcher != null) {
+        dispatcher.post(listener, event);
+      } else {
+        listener.modelChanged(event);
+      }
+    }
+  }
+
+  // Brings the matches up to date after a change of the transactions, and
+  // returns true if they changed
+  private boolean updateMatches(boolean removed) {
+    boolean changed = matchesTouched;
+    matchesTouched = false;
+    if (activeFilter == null) {
+      // The previous matches are no longer valid.
+      return clearMatchedFilterIndices() || changed;
+    }
+    if (!(activeFilter instanceof IncrementalFilter)) {
+      // The filter cannot test a transaction on its own, so filter them all
+      TransactionSnapshot all = transactions.snapshot();
+      BitSet positions = activeFilter.matchingPositions(all);
+      matchedSlots = slotsOf(positions, all);
+      matchedRows = RowBitmap.fromBitSet(positions);
+      return true;
+    }
+    // A removal shifts the positions of the matches after it
+    changed |= removed && !matchedSlots.isEmpty();
+    if (changed) {
+      matchedRows = null;
+    }
+    return changed;
+  }
+
+  // Returns true if there were matched filter indices to clear
+  private boolean clearMatchedFilterIndices() {
+    if (matchedSlots.isEmpty()) {
+      return false;
+    }
+    matchedSlots = new SlotBitmap();
+    matchedRows = RowBitmap.EMPTY;
+    return true;
+  }
+
+  // The slots of the given positions of the snapshot
+  private static SlotBitmap slotsOf(BitSet positions, TransactionSnapshot all) {
+    SlotBitmap slots = new SlotBitmap();
+    if (positions.isEmpty()) {
+      return slots;
+    }
+    TransactionSnapshot.Cursor cursor = all.cursor(positions.nextSetBit(0), positions.length());
+    while (cursor.next()) {
+      if (positions.get(cursor.position())) {
+        slots.set(cursor.slot());
+      }
     }
+    return slots;
   }
 }
@@ -0,0 +1,270 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code ExpenseTrackerModelEvent} describes what changed in the
+ * {@code ExpenseTrackerModel}, so that an observer can update only the
+ * affected rows instead of redrawing everything.
+ * <p>
+ * The concrete events are the nested classes:
+ * <ul>
+ * <li>{@link RowsInserted} - a range of rows was inserted</li>
+ * <li>{@link RowsRemoved} - some rows were removed</li>
+ * <li>{@link FilterMatchesChanged} - only the matched filter indices
+ * changed</li>
+ * <li>{@link Reset} - anything may have changed</li>
+ * </ul>
+ * Row numbers are positions in the list returned by
+ * {@code ExpenseTrackerModel.getTransactions()}.
+ * <p>
+ * When the model sends the event, it attaches a snapshot of its state. An
+ * observer that is notified on another thread (see
+ * {@code ExpenseTrackerModel.setDispatchExecutor}) should read the
+ * transactions, the matched filter indices and the summary from the event,
+ * not from the model, which may already have changed again.
+ */
+public abstract class ExpenseTrackerModelEvent {
+
+  private final ExpenseTrackerModel model;
+  private final boolean matchesChanged;
+  // The state of the model when the event was sent, attached by the model
+  private volatile TransactionSnapshot transactions;
+  private volatile SlotBitmap matchedSlots;
+  // Computed from matchedSlots when first asked for
+  private volatile RowBitmap matchedFilterRows;
+  private volatile TransactionSummary summary;
+
+  protected ExpenseTrackerModelEvent(ExpenseTrackerModel model, boolean matchesChanged) {
+    this.model = model;
+    this.matchesChanged = matchesChanged;
+  }
+
+  // Called by the model just before the event is sent
+  void attachState(TransactionSnapshot transactions, SlotBitmap matchedSlots, RowBitmap matchedFilterRows,
+      TransactionSummary summary) {
+    this.transactions = transactions;
+    this.matchedSlots = matchedSlots;
+    this.matchedFilterRows = matchedFilterRows;
+    this.summary = summary;
+  }
+
+  // Attaches the same state as the given event has
+  void attachStateOf(ExpenseTrackerModelEvent other) {
+    attachState(other.transactions, other.matchedSlots, other.matchedFilterRows, other.summary);
+  }
+
+  /**
+   * @return the transactions of the model when the event was sent
+   */
+  public TransactionSnapshot getTransactions() {
+    return (transactions != null) ? transactions : model.getTransactions();
+  }
+
+  /**
+   * @return the matched filter indices of the model when the event was sent
+   */
+  public List<Integer> getMatchedFilterIndices() {
+    return getMatchedFilterRows().toList();
+  }
+
+  /**
+   * @return the matched filter rows of the model when the event was sent
+   */
+  public RowBitmap getMatchedFilterRows() {
+    if (matchedFilterRows == null) {
+      if (matchedSlots == null) {
+        return model.getMatchedFilterRows();
+      }
+      matchedFilterRows = matchedSlots.toRows(transactions);
+    }
+    return matchedFilterRows;
+  }
+
+  /**
+   * @return the summary of the transactions when the event was sent
+   */
+  public TransactionSummary getSummary() {
+    return (summary != null) ? summary : model.getSummary();
+  }
+
+  /**
+   * @return the model that changed
+   */
+  public ExpenseTrackerModel getModel() {
+    return model;
+  }
+
+  /**
+   * @return true if the matched filter indices changed as well, in which case
+   *         the observer should read them again from the model
+   */
+  public boolean isMatchesChanged() {
+    return matchesChanged;
+  }
+
+  /**
+   * Merges the events of a batch into one event that describes the whole
+   * batch: appended rows, removed rows or only new matches are kept as such,
+   * any other mix becomes a {@link Reset}.
+   *
+   * @param model the model that changed
+   * @param events the events of the batch, in order
+   * @return the merged event, or null if there are no events
+   */
+  static ExpenseTrackerModelEvent merge(ExpenseTrackerModel model, List<ExpenseTrackerModelEvent> events) {
+    if (events.isEmpty()) {
+      return null;
+    }
+    if (events.size() == 1) {
+      return events.get(0);
+    }
+    boolean matchesChanged = false;
+    int insertedFirst = -1;
+    int insertedLast = -1;
+    // The removed rows, as positions before the batch, in ascending order
+    List<Integer> removedRows = new ArrayList<Integer>();
+    List<Transaction> removedTransactions = new ArrayList<Transaction>();
+    for (ExpenseTrackerModelEvent event : events) {
+      matchesChanged |= event.isMatchesChanged();
+      if (event instanceof RowsInserted) {
+        RowsInserted inserted = (RowsInserted) event;
+        if (!removedRows.isEmpty() || (insertedFirst != -1 && inserted.getFirstRow() != insertedLast + 1)) {
+          return new Reset(model);
+        }
+        if (insertedFirst == -1) {
+          insertedFirst = inserted.getFirstRow();
+        }
+        insertedLast = inserted.getLastRow();
+      } else if (event instanceof RowsRemoved) {
+        if (insertedFirst != -1) {
+          return new Reset(model);
+        }
+        RowsRemoved removed = (RowsRemoved) event;
+        int[] rows = removed.getRows();
+        // Map each row back to its position before the batch. Going from the
+        // last row keeps the earlier rows of the same event valid.
+        for (int i = rows.length - 1; i >= 0; i--) {
+          int original = rows[i];
+          int index = 0;
+          while (index < removedRows.size() && removedRows.get(index) <= original) {
+            original++;
+            index++;
+          }
+          removedRows.add(index, original);
+          removedTransactions.add(index, removed.getRemovedTransactions().get(i));
+        }
+      } else if (!(event instanceof FilterMatchesChanged)) {
+        return new Reset(model);
+      }
+    }
+    if (insertedFirst != -1) {
+      return new RowsInserted(model, insertedFirst, insertedLast, matchesChanged);
+    }
+    if (!removedRows.isEmpty()) {
+      int[] rows = new int[removedRows.size()];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = removedRows.get(i);
+      }
+      return new RowsRemoved(model, rows, removedTransactions, matchesChanged);
+    }
+    return new FilterMatchesChanged(model);
+  }
+
+  /**
+   * The rows {@code firstRow} to {@code lastRow} (both inclusive) were inserted.
+   */
+  public static class RowsInserted extends ExpenseTrackerModelEvent {
+
+    private final int firstRow;
+    private final int lastRow;
+
+    public RowsInserted(ExpenseTrackerModel model, int firstRow, int lastRow, boolean matchesChanged) {
+      super(model, matchesChanged);
+      this.firstRow = firstRow;
+      this.lastRow = lastRow;
+    }
+
+    public int getFirstRow() {
+      return firstRow;
+    }
+
+    public int getLastRow() {
+      return lastRow;
+    }
+
+    @Override
+    public String toString() {
+      return "RowsInserted[" + firstRow + ".." + lastRow + "]";
+    }
+  }
+
+  /**
+   * Some rows were removed. The rows are given in ascending order, as the
+   * positions they had before the removal.
+   */
+  public static class RowsRemoved extends ExpenseTrackerModelEvent {
+
+    private final int[] rows;
+    private final List<Transaction> removedTransactions;
+
+    public RowsRemoved(ExpenseTrackerModel model, int[] rows, List<Transaction> removedTransactions,
+        boolean matchesChanged) {
+      super(model, matchesChanged);
+      this.rows = rows.clone();
+      this.removedTransactions = Collections.unmodifiableList(removedTransactions);
+    }
+
+    /**
+     * @return the removed rows, in ascending order
+     */
+    public int[] getRows() {
+      return rows.clone();
+    }
+
+    /**
+     * @return the removed transactions, in the same order as the rows
+     */
+    public List<Transaction> getRemovedTransactions() {
+      return removedTransactions;
+    }
+
+    @Override
+    public String toString() {
+      return "RowsRemoved" + Arrays.toString(rows);
+    }
+  }
+
+  /**
+   * The transactions did not change, only the matched filter indices.
+   */
+  public static class FilterMatchesChanged extends ExpenseTrackerModelEvent {
+
+    public FilterMatchesChanged(ExpenseTrackerModel model) {
+      super(model, true);
+    }
+
+    @Override
+    public String toString() {
+      return "FilterMatchesChanged";
+    }
+  }
+
+  /**
+   * Anything may have changed, the observer should read the whole model again.
+   */
+  public static class Reset extends ExpenseTrackerModelEvent {
+
+    public Reset(ExpenseTrackerModel model) {
+      super(model, true);
+    }
+
+    @Override
+    public String toString() {
+      return "Reset";
+    }
+  }
+}
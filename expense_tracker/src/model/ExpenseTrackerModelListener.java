@@ -10,4 +10,16 @@ package model;
 public interface ExpenseTrackerModelListener {
     public void update(ExpenseTrackerModel model);
 
+    /**
+     * Called by the model with a description of what changed. The default
+     * implementation ignores the details and calls {@code update}, so existing
+     * observers keep working. Observers that override it can update only the
+     * affected rows.
+     *
+     * @param event what changed in the model
+     */
+    public default void modelChanged(ExpenseTrackerModelEvent event) {
+        update(event.getModel());
+    }
+
 }
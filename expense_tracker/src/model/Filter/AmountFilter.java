@@ -1,13 +1,16 @@
 package model.Filter;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import model.Money;
 import model.Transaction;
+import model.TransactionSnapshot;
 import controller.InputValidation;
 
-public class AmountFilter implements TransactionFilter{
-    private double amountFilter;
+public class AmountFilter implements IndexedFilter{
+    // Compared in cents, so that the match does not depend on double rounding
+    private long amountFilter;
 
     public AmountFilter(double amountFilter){
         // Since the AmountFilter constructor is public, 
@@ -15,19 +18,74 @@ public class AmountFilter implements TransactionFilter{
         if(!InputValidation.isValidAmount(amountFilter)){
             throw new IllegalArgumentException("Invalid amount filter");
         } else {
-            this.amountFilter = amountFilter;
+            this.amountFilter = Money.toCents(amountFilter);
         }
     }
+    public long getAmountCents() {
+        return amountFilter;
+    }
+
     @Override
     public List<Transaction> filter(List<Transaction> transactions){
-        List<Transaction> filteredTransactions = new ArrayList<>();
-        for(Transaction transaction : transactions){
-            // Your solution could use a different comparison here.
-            if(transaction.getAmount() == amountFilter){
-                filteredTransactions.add(transaction);
-            }
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+        }
+        return IndexedFilter.super.filter(transactions);
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return transaction.getAmountCents() == amountFilter;
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        return cursor.amountCents() == amountFilter;
+    }
+
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (!(transactions instanceof TransactionSnapshot)) {
+            return IndexedFilter.super.matchingPositions(transactions);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        // Answers from the amount index of the model. An older snapshot has no
+        // index, then the primitive amount column is scanned instead of the
+        // transaction objects, several amounts at a time where the CPU can.
+        AmountIndex index = snapshot.getIndex(AmountIndex.class);
+        if (index != null) {
+            return index.positionSetInRange(amountFilter, amountFilter, snapshot);
         }
-        return filteredTransactions;
+        return snapshot.positionsWithAmountBetween(amountFilter, amountFilter);
     }
     
+
+    // Equal filters match the same transactions, so the model can reuse their
+    // results
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof AmountFilter)) {
+            return false;
+        }
+        return amountFilter == ((AmountFilter) other).amountFilter;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(amountFilter);
+    }
+
+    @Override
+    public int indexedCount(TransactionSnapshot transactions) {
+        AmountIndex index = transactions.getIndex(AmountIndex.class);
+        return (index == null) ? -1 : index.countInRange(amountFilter, amountFilter);
+    }
+
+    @Override
+    public String toString() {
+        return "amount = " + Money.format(amountFilter);
+    }
 }
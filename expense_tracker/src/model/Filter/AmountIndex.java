@@ -0,0 +1,94 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The AmountIndex keeps the transactions sorted by amount, so that exact,
+ * range and nearest-amount queries do not need to scan every transaction.
+ * See SortedKeyIndex for the structure and the costs.
+ *
+ * NOTE) The ExpenseTrackerModel attaches one AmountIndex to its store; filters
+ * find it with TransactionSnapshot.getIndex(AmountIndex.class).
+ */
+public final class AmountIndex extends SortedKeyIndex {
+
+    @Override
+    protected long keyOf(Transaction t) {
+        return t.getAmountCents();
+    }
+
+    @Override
+    protected long keyOf(TransactionSnapshot.Cursor cursor) {
+        return cursor.amountCents();
+    }
+
+    /**
+     * Finds the transactions whose amount is between the given bounds.
+     *
+     * @param minCents the lowest amount, in cents (inclusive)
+     * @param maxCents the highest amount, in cents (inclusive)
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions, in ascending order
+     */
+    public int[] positionsInRange(long minCents, long maxCents, TransactionSnapshot transactions) {
+        return positionsBetween(minCents, maxCents, transactions);
+    }
+
+    /**
+     * Like positionsInRange, but as a set, which needs no sort of the
+     * matching slots, see SortedKeyIndex.positionSetBetween.
+     *
+     * @param minCents the lowest amount, in cents (inclusive)
+     * @param maxCents the highest amount, in cents (inclusive)
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions
+     */
+    public BitSet positionSetInRange(long minCents, long maxCents, TransactionSnapshot transactions) {
+        return positionSetBetween(minCents, maxCents, transactions);
+    }
+
+    /**
+     * @param minCents the lowest amount, in cents (inclusive)
+     * @param maxCents the highest amount, in cents (inclusive)
+     * @return the estimated number of transactions in the range, see
+     *         SortedKeyIndex.countBetween
+     */
+    public int countInRange(long minCents, long maxCents) {
+        return countBetween(minCents, maxCents);
+    }
+
+    /**
+     * Finds the slots of the largest amounts, for top-k queries.
+     *
+     * @param k the number of slots to return
+     * @param accept the test of a slot, for example a filter
+     * @return at most k slots, largest amount first, see
+     *         SortedKeyIndex.highestSlots
+     */
+    public int[] largestSlots(int k, IntPredicate accept) {
+        return highestSlots(k, accept);
+    }
+
+    /**
+     * @param cents the amount, in cents
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions with exactly this amount
+     */
+    public int[] positionsOf(long cents, TransactionSnapshot transactions) {
+        return positionsBetween(cents, cents, transactions);
+    }
+
+    /**
+     * @param cents the amount, in cents
+     * @param toleranceCents how far, in cents, the amounts may be from it
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions within the tolerance
+     */
+    public int[] positionsNear(long cents, long toleranceCents, TransactionSnapshot transactions) {
+        return positionsBetween(cents - toleranceCents, cents + toleranceCents, transactions);
+    }
+}
@@ -0,0 +1,155 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.Money;
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The AmountRangeFilter keeps the transactions whose amount is between a
+ * lowest and a highest amount, both inclusive. For the current transactions
+ * of the model it answers from the AmountIndex instead of scanning.
+ */
+public class AmountRangeFilter implements IndexedFilter {
+    // Compared in cents, so that the match does not depend on double rounding
+    private final long minCents;
+    private final long maxCents;
+
+    public AmountRangeFilter(double minAmount, double maxAmount) {
+        this(toCents(minAmount), toCents(maxAmount));
+    }
+
+    private AmountRangeFilter(long minCents, long maxCents) {
+        if (minCents < 0 || maxCents < minCents) {
+            throw new IllegalArgumentException("Invalid amount range filter");
+        }
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+    }
+
+    /**
+     * @param minCents the lowest amount, in cents (inclusive)
+     * @param maxCents the highest amount, in cents (inclusive)
+     * @return a filter for the amounts between both
+     */
+    static AmountRangeFilter ofCents(long minCents, long maxCents) {
+        return new AmountRangeFilter(minCents, maxCents);
+    }
+
+    /**
+     * @param minAmount the lowest amount (inclusive)
+     * @return a filter for all amounts of at least minAmount
+     */
+    public static AmountRangeFilter atLeast(double minAmount) {
+        return new AmountRangeFilter(toCents(minAmount), Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxAmount the highest amount (inclusive)
+     * @return a filter for all amounts of at most maxAmount
+     */
+    public static AmountRangeFilter atMost(double maxAmount) {
+        return new AmountRangeFilter(0, toCents(maxAmount));
+    }
+
+    /**
+     * @param amount the amount to look for
+     * @param tolerance how far the amounts may be from it (inclusive)
+     * @return a filter for all amounts within amount +/- tolerance
+     */
+    public static AmountRangeFilter within(double amount, double tolerance) {
+        long cents = toCents(amount);
+        long toleranceCents = toCents(tolerance);
+        if (toleranceCents < 0) {
+            throw new IllegalArgumentException("Invalid amount tolerance");
+        }
+        return new AmountRangeFilter(Math.max(0, cents - toleranceCents), cents + toleranceCents);
+    }
+
+    public long getMinCents() {
+        return minCents;
+    }
+
+    public long getMaxCents() {
+        return maxCents;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+        }
+        return IndexedFilter.super.filter(transactions);
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return matches(transaction.getAmountCents());
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        return matches(cursor.amountCents());
+    }
+
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (!(transactions instanceof TransactionSnapshot)) {
+            return IndexedFilter.super.matchingPositions(transactions);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        // Answers from the amount index of the model. An older snapshot has
+        // no index, then the primitive amount column is scanned instead,
+        // several amounts at a time where the CPU can.
+        AmountIndex index = snapshot.getIndex(AmountIndex.class);
+        if (index != null) {
+            return index.positionSetInRange(minCents, maxCents, snapshot);
+        }
+        return snapshot.positionsWithAmountBetween(minCents, maxCents);
+    }
+
+    private boolean matches(long cents) {
+        return cents >= minCents && cents <= maxCents;
+    }
+
+    private static long toCents(double amount) {
+        try {
+            return Money.toCents(amount);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid amount range filter", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof AmountRangeFilter)) {
+            return false;
+        }
+        AmountRangeFilter that = (AmountRangeFilter) other;
+        return minCents == that.minCents && maxCents == that.maxCents;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minCents) + Long.hashCode(maxCents);
+    }
+
+    @Override
+    public int indexedCount(TransactionSnapshot transactions) {
+        AmountIndex index = transactions.getIndex(AmountIndex.class);
+        return (index == null) ? -1 : index.countInRange(minCents, maxCents);
+    }
+
+    @Override
+    public String toString() {
+        if (maxCents == Long.MAX_VALUE) {
+            return "amount >= " + Money.format(minCents);
+        }
+        return "amount in [" + Money.format(minCents) + ", " + Money.format(maxCents) + "]";
+    }
+}
@@ -0,0 +1,76 @@
+package model.Filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The AndFilter keeps the transactions that match all of its filters. On a
+ * snapshot the FilterPlanner starts from the cheapest filter, for example
+ * the positions of a category from the CategoryIndex, and then intersects
+ * the results of other indexes or checks the remaining filters on those
+ * positions only.
+ */
+public class AndFilter extends CompositeFilter {
+    private final List<IncrementalFilter> filters;
+
+    public AndFilter(IncrementalFilter... filters) {
+        this(filters == null ? null : Arrays.asList(filters));
+    }
+
+    public AndFilter(List<? extends IncrementalFilter> filters) {
+        this.filters = Collections.unmodifiableList(partsOf(filters, "Invalid and filter"));
+    }
+
+    public List<IncrementalFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        for (IncrementalFilter filter : filters) {
+            if (!filter.matches(transaction)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        for (IncrementalFilter filter : filters) {
+            if (!filter.matchesRow(cursor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof AndFilter)) {
+            return false;
+        }
+        return filters.equals(((AndFilter) other).filters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * filters.hashCode() + 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < filters.size(); i++) {
+            text.append(i == 0 ? "" : " AND ").append(filters.get(i));
+        }
+        return text.append(")").toString();
+    }
+}
@@ -1,13 +1,20 @@
 package model.Filter;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Locale;
 
+import model.CategoryDictionary;
+import model.CategoryIndex;
 import model.Transaction;
+import model.TransactionSnapshot;
 import controller.InputValidation;
 
-public class CategoryFilter implements TransactionFilter {
+public class CategoryFilter implements IndexedFilter {
     private String categoryFilter;
+    // The ordinal of the category, looked up again until some transaction
+    // has used the category; after that it never changes
+    private volatile int ordinal = CategoryDictionary.UNKNOWN;
 
     public CategoryFilter(String categoryFilter) {
         // Since the CategoryFilter constructor is public, 
@@ -19,17 +26,105 @@ public class CategoryFilter implements TransactionFilter {
         }
     }
 
+    public String getCategory() {
+        return categoryFilter;
+    }
+
     @Override
     public List<Transaction> filter(List<Transaction> transactions) {
 
-        List<Transaction> filteredTransactions = new ArrayList<>();
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+        }
+        return IndexedFilter.super.filter(transactions);
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return transaction.getCategory().equalsIgnoreCase(categoryFilter);
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        // Every stored row has an ordinal, so an unknown category matches none
+        int known = ordinal();
+        return known != CategoryDictionary.UNKNOWN && cursor.categoryOrdinal() == known;
+    }
+
+    private int ordinal() {
+        int known = ordinal;
+        if (known == CategoryDictionary.UNKNOWN) {
+            known = CategoryDictionary.ordinalOf(categoryFilter);
+            ordinal = known;
+        }
+        return known;
+    }
 
-        for (Transaction transaction : transactions) {
-            if (transaction.getCategory().equalsIgnoreCase(categoryFilter)) {
-                filteredTransactions.add(transaction);
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (!(transactions instanceof TransactionSnapshot)) {
+            return IndexedFilter.super.matchingPositions(transactions);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        // Answers from the category index of the model in O(matches). An older
+        // snapshot has no index, then the byte category column is scanned
+        // instead of comparing strings per row.
+        CategoryIndex index = snapshot.getIndex(CategoryIndex.class);
+        if (index != null) {
+            return FilterResults.toBitSet(index.positionsOf(categoryFilter, snapshot));
+        }
+        BitSet positions = new BitSet(snapshot.size());
+        int known = ordinal();
+        if (known == CategoryDictionary.UNKNOWN) {
+            return positions;
+        }
+        TransactionSnapshot.Cursor cursor = snapshot.cursor();
+        while (cursor.next()) {
+            if (cursor.categoryOrdinal() == known) {
+                positions.set(cursor.position());
             }
         }
+        return positions;
+    }
 
-        return filteredTransactions;
+    // Equal filters match the same transactions, so the model can reuse their
+    // results. The category is compared ignoring case, like the match.
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CategoryFilter)) {
+            return false;
+        }
+        return categoryFilter.equalsIgnoreCase(((CategoryFilter) other).categoryFilter);
+    }
+
+    @Override
+    public int hashCode() {
+        return categoryFilter.toLowerCase(Locale.ROOT).hashCode();
+    }
+
+    @Override
+    public long count(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            // The category index keeps the exact count of every category
+            int count = indexedCount((TransactionSnapshot) transactions);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return matchingPositions(transactions).cardinality();
+    }
+
+    @Override
+    public int indexedCount(TransactionSnapshot transactions) {
+        CategoryIndex index = transactions.getIndex(CategoryIndex.class);
+        return (index == null) ? -1 : index.countOf(categoryFilter);
+    }
+
+    @Override
+    public String toString() {
+        return "category = " + categoryFilter;
     }
 }
@@ -0,0 +1,48 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The CompositeFilter is the base of the filters that combine other filters.
+ * A snapshot is filtered with the plan of the FilterPlanner, which uses the
+ * indexes of the parts where it can; any other list is filtered with
+ * matches, one transaction at a time.
+ */
+abstract class CompositeFilter implements IncrementalFilter {
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+        }
+        return IncrementalFilter.super.filter(transactions);
+    }
+
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterPlanner.plan(this, (TransactionSnapshot) transactions).execute();
+        }
+        return IncrementalFilter.super.matchingPositions(transactions);
+    }
+
+    // The parts of a composite filter, checked and copied
+    static List<IncrementalFilter> partsOf(List<? extends IncrementalFilter> filters, String error) {
+        if (filters == null || filters.isEmpty()) {
+            throw new IllegalArgumentException(error);
+        }
+        List<IncrementalFilter> parts = new ArrayList<>(filters.size());
+        for (IncrementalFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException(error);
+            }
+            parts.add(filter);
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,118 @@
+package model.Filter;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The DateRangeFilter keeps the transactions whose timestamp is in
+ * [from, to). For the current transactions of the model it answers from the
+ * TimeIndex, so a month-to-date view does not scan years of history.
+ */
+public class DateRangeFilter implements IndexedFilter {
+    // Epoch milliseconds, compared with the timestamp column
+    private final long fromMillis;
+    private final long toMillis;
+
+    public DateRangeFilter(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("Invalid date range filter");
+        }
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    public DateRangeFilter(Instant from, Instant to) {
+        this(checked(from).toEpochMilli(), checked(to).toEpochMilli());
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+        }
+        return IndexedFilter.super.filter(transactions);
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return matches(transaction.getTimestampMillis());
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        return matches(cursor.timestamp());
+    }
+
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (!(transactions instanceof TransactionSnapshot)) {
+            return IndexedFilter.super.matchingPositions(transactions);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        // Answers from the time index of the model. An older snapshot has
+        // no index, then the primitive timestamp column is scanned instead.
+        TimeIndex index = snapshot.getIndex(TimeIndex.class);
+        if (index != null) {
+            return FilterResults.toBitSet(index.positionsInRange(fromMillis, toMillis, snapshot));
+        }
+        BitSet positions = new BitSet(snapshot.size());
+        TransactionSnapshot.Cursor cursor = snapshot.cursor();
+        while (cursor.next()) {
+            if (matches(cursor.timestamp())) {
+                positions.set(cursor.position());
+            }
+        }
+        return positions;
+    }
+
+    private boolean matches(long timestamp) {
+        return timestamp >= fromMillis && timestamp < toMillis;
+    }
+
+    private static Instant checked(Instant instant) {
+        if (instant == null) {
+            throw new IllegalArgumentException("Invalid date range filter");
+        }
+        return instant;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof DateRangeFilter)) {
+            return false;
+        }
+        DateRangeFilter that = (DateRangeFilter) other;
+        return fromMillis == that.fromMillis && toMillis == that.toMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(fromMillis) + Long.hashCode(toMillis);
+    }
+
+    @Override
+    public int indexedCount(TransactionSnapshot transactions) {
+        TimeIndex index = transactions.getIndex(TimeIndex.class);
+        return (index == null) ? -1 : index.countInRange(fromMillis, toMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "date in [" + Instant.ofEpochMilli(fromMillis) + ", " + Instant.ofEpochMilli(toMillis) + ")";
+    }
+}
@@ -0,0 +1,221 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The FilterPlan is the way the FilterPlanner chose to find the matches of a
+ * filter in one snapshot: a tree of index lookups, scans and the set
+ * operations that combine them, with the estimated number of matching rows
+ * and the estimated cost, in rows touched, of every step.
+ *
+ * explain() shows the plan, one step per line, for example
+ *
+ * <pre>
+ * AND (rows=8, cost=200)
+ *   INDEX amount in [10.00, 20.00] (rows=40, cost=40)
+ *   CHECK category = food on each candidate (rows=8, cost=160)
+ * </pre>
+ */
+public abstract class FilterPlan {
+    private final TransactionFilter filter;
+    private final double estimatedRows;
+    private final double estimatedCost;
+    final TransactionSnapshot transactions;
+
+    FilterPlan(TransactionFilter filter, double estimatedRows, double estimatedCost,
+            TransactionSnapshot transactions) {
+        this.filter = filter;
+        this.estimatedRows = estimatedRows;
+        this.estimatedCost = estimatedCost;
+        this.transactions = transactions;
+    }
+
+    /**
+     * @return the filter this step finds the matches of
+     */
+    public TransactionFilter getFilter() {
+        return filter;
+    }
+
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public double getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    /**
+     * @return the positions of the matching transactions of the snapshot
+     */
+    public abstract BitSet execute();
+
+    /**
+     * @return the plan, one step per line
+     */
+    public String explain() {
+        StringBuilder text = new StringBuilder();
+        explain(text, "");
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    abstract void explain(StringBuilder text, String indent);
+
+    void line(StringBuilder text, String indent, String step) {
+        text.append(indent).append(step).append(String.format(Locale.ROOT, " (rows=%.0f, cost=%.0f)%n",
+                estimatedRows, estimatedCost));
+    }
+
+    // The matches of one filter, from its index
+    static final class Index extends FilterPlan {
+        Index(TransactionFilter filter, int count, TransactionSnapshot transactions) {
+            super(filter, count, count, transactions);
+        }
+
+        @Override
+        public BitSet execute() {
+            return getFilter().matchingPositions(transactions);
+        }
+
+        @Override
+        void explain(StringBuilder text, String indent) {
+            line(text, indent, "INDEX " + getFilter());
+        }
+    }
+
+    // The matches of one filter, from a scan of all transactions
+    static final class Scan extends FilterPlan {
+        Scan(TransactionFilter filter, double estimatedRows, TransactionSnapshot transactions) {
+            super(filter, estimatedRows, transactions.size(), transactions);
+        }
+
+        @Override
+        public BitSet execute() {
+            if (getFilter() instanceof CompositeFilter) {
+                // Its matchingPositions would plan it again
+                return FilterResults.scan((CompositeFilter) getFilter(), transactions);
+            }
+            return getFilter().matchingPositions(transactions);
+        }
+
+        @Override
+        void explain(StringBuilder text, String indent) {
+            line(text, indent, "SCAN " + getFilter());
+        }
+    }
+
+    // The complement of the matches of the part
+    static final class Not extends FilterPlan {
+        private final FilterPlan part;
+
+        Not(NotFilter filter, FilterPlan part, double estimatedCost, TransactionSnapshot transactions) {
+            super(filter, transactions.size() - part.getEstimatedRows(), estimatedCost, transactions);
+            this.part = part;
+        }
+
+        @Override
+        public BitSet execute() {
+            BitSet positions = part.execute();
+            positions.flip(0, transactions.size());
+            return positions;
+        }
+
+        @Override
+        void explain(StringBuilder text, String indent) {
+            line(text, indent, "NOT");
+            part.explain(text, indent + "  ");
+        }
+    }
+
+    // The union of the matches of the parts
+    static final class Or extends FilterPlan {
+        private final List<FilterPlan> parts;
+
+        Or(OrFilter filter, List<FilterPlan> parts, double estimatedRows, double estimatedCost,
+                TransactionSnapshot transactions) {
+            super(filter, estimatedRows, estimatedCost, transactions);
+            this.parts = parts;
+        }
+
+        @Override
+        public BitSet execute() {
+            BitSet positions = new BitSet(transactions.size());
+            for (FilterPlan part : parts) {
+                positions.or(part.execute());
+            }
+            return positions;
+        }
+
+        @Override
+        void explain(StringBuilder text, String indent) {
+            line(text, indent, "OR");
+            for (FilterPlan part : parts) {
+                part.explain(text, indent + "  ");
+            }
+        }
+    }
+
+    // The matches of the first part, intersected with the matches of the
+    // parts that are cheaper to look up than to check, and then checked
+    // against the other parts one candidate at a time
+    static final class And extends FilterPlan {
+        private final List<FilterPlan> intersected;
+        private final List<FilterPlan> checked;
+        // The estimated number of candidates before every check
+        private final double[] checkedRows;
+
+        And(AndFilter filter, List<FilterPlan> intersected, List<FilterPlan> checked, double[] checkedRows,
+                double estimatedRows, double estimatedCost, TransactionSnapshot transactions) {
+            super(filter, estimatedRows, estimatedCost, transactions);
+            this.intersected = intersected;
+            this.checked = checked;
+            this.checkedRows = checkedRows;
+        }
+
+        @Override
+        public BitSet execute() {
+            BitSet candidates = intersected.get(0).execute();
+            for (int i = 1; i < intersected.size() && !candidates.isEmpty(); i++) {
+                candidates.and(intersected.get(i).execute());
+            }
+            if (checked.isEmpty()) {
+                return candidates;
+            }
+            for (int position = candidates.nextSetBit(0); position >= 0;
+                    position = candidates.nextSetBit(position + 1)) {
+                Transaction transaction = transactions.get(position);
+                for (FilterPlan part : checked) {
+                    if (!((IncrementalFilter) part.getFilter()).matches(transaction)) {
+                        candidates.clear(position);
+                        break;
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        @Override
+        void explain(StringBuilder text, String indent) {
+            line(text, indent, "AND");
+            for (FilterPlan part : intersected) {
+                part.explain(text, indent + "  ");
+            }
+            for (int i = 0; i < checked.size(); i++) {
+                double rowsAfter = checkedRows[i] * FilterPlanner.selectivity(checked.get(i), transactions);
+                text.append(indent).append("  CHECK ").append(checked.get(i).getFilter())
+                        .append(String.format(Locale.ROOT, " on each candidate (rows=%.0f, cost=%.0f)%n",
+                                rowsAfter, checkedRows[i] * FilterPlanner.CHECK_COST));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import model.TransactionSnapshot;
+
+/**
+ * The FilterPlanner chooses how to find the matches of a filter in a
+ * snapshot, from the indexes of the model and their counts.
+ *
+ * Every filter of this package that has an index for the snapshot tells how
+ * many transactions the index would return; that count is both the number
+ * of rows and the cost of the lookup. Any other filter costs a scan of all
+ * transactions and is assumed to match SCAN_SELECTIVITY of them. From these
+ * estimates:
+ *
+ * - AND starts from its cheapest part. Every other part, most selective
+ * first, is intersected if its lookup and the intersection (one word per 64
+ * rows) cost less than checking it on the remaining candidates, and checked
+ * on the candidates otherwise. Checking a candidate costs CHECK_COST.
+ * - OR unites the results of its parts, or scans the transactions once with
+ * all of them if the parts together cost more than one scan.
+ * - NOT takes the complement of its part.
+ *
+ * The estimates assume that the parts are independent.
+ */
+public final class FilterPlanner {
+    // The share of the transactions assumed to match a filter without index
+    static final double SCAN_SELECTIVITY = 0.5;
+    // Checking one candidate looks up its row at random, which costs about
+    // as much as reading a few rows in order
+    static final double CHECK_COST = 4;
+
+    private FilterPlanner() {
+    }
+
+    /**
+     * @param filter the filter to plan
+     * @param transactions the snapshot to filter
+     * @return the cheapest plan found to filter the snapshot
+     */
+    public static FilterPlan plan(TransactionFilter filter, TransactionSnapshot transactions) {
+        if (filter == null || transactions == null) {
+            throw new IllegalArgumentException("Invalid filter plan");
+        }
+        if (filter instanceof AndFilter) {
+            return planAnd((AndFilter) filter, transactions);
+        }
+        if (filter instanceof OrFilter) {
+            return planOr((OrFilter) filter, transactions);
+        }
+        if (filter instanceof NotFilter) {
+            FilterPlan part = plan(((NotFilter) filter).getFilter(), transactions);
+            return new FilterPlan.Not((NotFilter) filter, part,
+                    part.getEstimatedCost() + transactions.size() / 64.0, transactions);
+        }
+        if (filter instanceof IndexedFilter) {
+            int count = ((IndexedFilter) filter).indexedCount(transactions);
+            if (count >= 0) {
+                return new FilterPlan.Index(filter, count, transactions);
+            }
+        }
+        return new FilterPlan.Scan(filter, transactions.size() * SCAN_SELECTIVITY, transactions);
+    }
+
+    /**
+     * @param filter the filter to plan
+     * @param transactions the snapshot to filter
+     * @return the plan, one step per line, with the estimated rows and costs
+     */
+    public static String explain(TransactionFilter filter, TransactionSnapshot transactions) {
+        return plan(filter, transactions).explain();
+    }
+
+    // The estimated share of the transactions that the plan matches
+    static double selectivity(FilterPlan plan, TransactionSnapshot transactions) {
+        return (transactions.size() == 0) ? 0 : plan.getEstimatedRows() / transactions.size();
+    }
+
+    private static FilterPlan planAnd(AndFilter filter, TransactionSnapshot transactions) {
+        List<FilterPlan> parts = new ArrayList<>();
+        for (IncrementalFilter part : filter.getFilters()) {
+            parts.add(plan(part, transactions));
+        }
+        // The cheapest part first, then the others by the rows they keep
+        FilterPlan first = parts.stream().min(Comparator.comparingDouble(FilterPlan::getEstimatedCost)).get();
+        parts.remove(first);
+        parts.sort(Comparator.comparingDouble(FilterPlan::getEstimatedRows));
+        List<FilterPlan> intersected = new ArrayList<>();
+        List<FilterPlan> checked = new ArrayList<>();
+        double[] checkedRows = new double[parts.size()];
+        intersected.add(first);
+        double rows = first.getEstimatedRows();
+        double cost = first.getEstimatedCost();
+        for (FilterPlan part : parts) {
+            double intersectCost = part.getEstimatedCost() + transactions.size() / 64.0;
+            if (intersectCost < rows * CHECK_COST) {
+                intersected.add(part);
+                cost += intersectCost;
+            } else {
+                checkedRows[checked.size()] = rows;
+                checked.add(part);
+                cost += rows * CHECK_COST;
+            }
+            rows *= selectivity(part, transactions);
+        }
+        return new FilterPlan.And(filter, intersected, checked, checkedRows, rows, cost, transactions);
+    }
+
+    private static FilterPlan planOr(OrFilter filter, TransactionSnapshot transactions) {
+        List<FilterPlan> parts = new ArrayList<>();
+        double cost = 0;
+        double missed = 1;
+        for (IncrementalFilter part : filter.getFilters()) {
+            FilterPlan plan = plan(part, transactions);
+            parts.add(plan);
+            cost += plan.getEstimatedCost();
+            missed *= 1 - selectivity(plan, transactions);
+        }
+        double rows = transactions.size() * (1 - missed);
+        if (parts.size() > 1 && cost > transactions.size()) {
+            // One scan that checks every part is cheaper
+            return new FilterPlan.Scan(filter, rows, transactions);
+        }
+        return new FilterPlan.Or(filter, parts, rows, cost, transactions);
+    }
+}
@@ -0,0 +1,47 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Conversions between the positions that the filters find and the
+ * transactions that filter(List) returns.
+ */
+final class FilterResults {
+
+    private FilterResults() {
+    }
+
+    static BitSet toBitSet(int[] positions) {
+        BitSet bits = new BitSet(positions.length == 0 ? 0 : positions[positions.length - 1] + 1);
+        for (int position : positions) {
+            bits.set(position);
+        }
+        return bits;
+    }
+
+    // The positions of the transactions that match, from a scan
+    static BitSet scan(IncrementalFilter filter, TransactionSnapshot transactions) {
+        BitSet positions = new BitSet(transactions.size());
+        TransactionSnapshot.Cursor cursor = transactions.cursor();
+        while (cursor.next()) {
+            if (filter.matchesRow(cursor)) {
+                positions.set(cursor.position());
+            }
+        }
+        return positions;
+    }
+
+    // The transactions at the given positions, in list order
+    static List<Transaction> transactionsAt(TransactionSnapshot transactions, BitSet positions) {
+        List<Transaction> filteredTransactions = new ArrayList<>(positions.cardinality());
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            filteredTransactions.add(transactions.get(position));
+        }
+        return filteredTransactions;
+    }
+}
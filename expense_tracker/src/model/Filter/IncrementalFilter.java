@@ -0,0 +1,73 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The IncrementalFilter is a TransactionFilter that can test one transaction
+ * on its own. The ExpenseTrackerModel uses this to keep the matches of the
+ * active filter up to date: it only tests the added transactions, instead of
+ * filtering all of them again after every change. A filter that does not
+ * implement this interface is applied again to all transactions.
+ *
+ * matches is enough to implement the interface: the stream of the matches is
+ * lazy, and filter and matchingPositions are built on matches without any
+ * intermediate list. The filters of this package override them to use the
+ * indexes and columns of a snapshot.
+ *
+ * matchesRow tests the current row of a snapshot cursor. By default it loads
+ * the transaction of the row; the filters of this package read only the
+ * columns they need instead, which is what parallel scans call per row.
+ *
+ * matches must agree with matchesRow, filter and matchingPositions.
+ */
+public interface IncrementalFilter extends TransactionFilter {
+
+  /**
+   * @param transaction a transaction
+   * @return true if the transaction matches the filter
+   */
+  public boolean matches(Transaction transaction);
+
+  /**
+   * @param cursor a cursor on a row of a snapshot
+   * @return true if the transaction of the current row matches the filter
+   */
+  public default boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+    return matches(cursor.transaction());
+  }
+
+  @Override
+  public default List<Transaction> filter(List<Transaction> transactions) {
+    return stream(transactions).collect(Collectors.toList());
+  }
+
+  @Override
+  public default BitSet matchingPositions(List<Transaction> transactions) {
+    BitSet positions = new BitSet(transactions.size());
+    int position = 0;
+    for (Transaction transaction : transactions) {
+      if (matches(transaction)) {
+        positions.set(position);
+      }
+      position++;
+    }
+    return positions;
+  }
+
+  /**
+   * Returns a lazy stream of the matching transactions: every transaction is
+   * tested when the stream reaches it. A snapshot is walked with its cursor,
+   * and can be split for a parallel stream.
+   */
+  @Override
+  public default Stream<Transaction> stream(List<Transaction> transactions) {
+    return transactions.stream().filter(this::matches);
+  }
+
+}
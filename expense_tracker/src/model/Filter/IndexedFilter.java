@@ -0,0 +1,20 @@
+package model.Filter;
+
+import model.TransactionSnapshot;
+
+/**
+ * The IndexedFilter is a filter of this package that can answer a snapshot
+ * from an index of the model. The FilterPlanner asks it how many
+ * transactions the index would return, to choose between the index and a
+ * scan, and to order the parts of a composite filter.
+ */
+interface IndexedFilter extends IncrementalFilter {
+
+    /**
+     * @param transactions a snapshot
+     * @return the estimated number of matches from the index, or -1 if the
+     *         snapshot has no index for this filter
+     */
+    public int indexedCount(TransactionSnapshot transactions);
+
+}
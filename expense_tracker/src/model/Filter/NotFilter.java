@@ -0,0 +1,55 @@
+package model.Filter;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The NotFilter keeps the transactions that do not match its filter. On a
+ * snapshot the FilterPlanner takes the complement of the positions of the
+ * filter, so a filter that uses an index still does.
+ */
+public class NotFilter extends CompositeFilter {
+    private final IncrementalFilter filter;
+
+    public NotFilter(IncrementalFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Invalid not filter");
+        }
+        this.filter = filter;
+    }
+
+    public IncrementalFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return !filter.matches(transaction);
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        return !filter.matchesRow(cursor);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof NotFilter)) {
+            return false;
+        }
+        return filter.equals(((NotFilter) other).filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * filter.hashCode() + 3;
+    }
+
+    @Override
+    public String toString() {
+        return "NOT " + filter;
+    }
+}
@@ -0,0 +1,74 @@
+package model.Filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The OrFilter keeps the transactions that match any of its filters. On a
+ * snapshot the FilterPlanner unites the results of the filters, or scans the
+ * transactions once if that is cheaper than the scans of several filters.
+ */
+public class OrFilter extends CompositeFilter {
+    private final List<IncrementalFilter> filters;
+
+    public OrFilter(IncrementalFilter... filters) {
+        this(filters == null ? null : Arrays.asList(filters));
+    }
+
+    public OrFilter(List<? extends IncrementalFilter> filters) {
+        this.filters = Collections.unmodifiableList(partsOf(filters, "Invalid or filter"));
+    }
+
+    public List<IncrementalFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        for (IncrementalFilter filter : filters) {
+            if (filter.matches(transaction)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        for (IncrementalFilter filter : filters) {
+            if (filter.matchesRow(cursor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof OrFilter)) {
+            return false;
+        }
+        return filters.equals(((OrFilter) other).filters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * filters.hashCode() + 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < filters.size(); i++) {
+            text.append(i == 0 ? "" : " OR ").append(filters.get(i));
+        }
+        return text.append(")").toString();
+    }
+}
@@ -0,0 +1,141 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The ParallelFilter applies another filter to a large snapshot on a
+ * ForkJoinPool. The RangeSpliterator of the snapshot splits the positions in
+ * halves at multiples of 64 until the parts are small enough, and every part
+ * tests its rows with IncrementalFilter.matchesRow, which reads the columns
+ * of the built-in filters without loading a Transaction. The parts write the
+ * words of one shared position bitmap; they never share a word, so the
+ * per-part bitmaps are merged in order without any copying or locking.
+ *
+ * Below the sequential threshold, and for lists that are not snapshots, the
+ * filter is applied as it is, so small ledgers do not pay for forking.
+ *
+ * NOTE) The built-in filters answer the current snapshot of the model from an
+ * index, which is usually faster than any scan. Parallel filtering pays off
+ * for filters that have to scan: older snapshots and filters of other kinds.
+ */
+public class ParallelFilter implements IncrementalFilter {
+    // Below this many transactions, forking costs more than it saves
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1 << 15;
+    // The smallest part a thread scans on its own
+    private static final int MIN_PART_SIZE = 1 << 12;
+
+    private final IncrementalFilter filter;
+    private final ForkJoinPool pool;
+    private final int sequentialThreshold;
+
+    public ParallelFilter(IncrementalFilter filter) {
+        this(filter, ForkJoinPool.commonPool(), DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    public ParallelFilter(IncrementalFilter filter, ForkJoinPool pool, int sequentialThreshold) {
+        if (filter == null || pool == null || sequentialThreshold < 0) {
+            throw new IllegalArgumentException("Invalid parallel filter");
+        }
+        this.filter = filter;
+        this.pool = pool;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    public IncrementalFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        if (!isParallel(transactions)) {
+            return filter.filter(transactions);
+        }
+        return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return filter.matches(transaction);
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        return filter.matchesRow(cursor);
+    }
+
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (!isParallel(transactions)) {
+            return filter.matchingPositions(transactions);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        long[] words = new long[(snapshot.size() + 63) >>> 6];
+        int partSize = Math.max(MIN_PART_SIZE, snapshot.size() / (pool.getParallelism() * 4));
+        pool.invoke(new ScanPart(snapshot.spliterator(), partSize, words));
+        return BitSet.valueOf(words);
+    }
+
+    private boolean isParallel(List<Transaction> transactions) {
+        return transactions instanceof TransactionSnapshot && transactions.size() >= sequentialThreshold;
+    }
+
+    // Tests the transactions of one range of positions, after forking off
+    // the first halves of it while it is too large
+    private class ScanPart extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TransactionSnapshot.RangeSpliterator range;
+        private final int partSize;
+        private final long[] words;
+
+        ScanPart(TransactionSnapshot.RangeSpliterator range, int partSize, long[] words) {
+            this.range = range;
+            this.partSize = partSize;
+            this.words = words;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanPart> forked = new ArrayList<>();
+            for (TransactionSnapshot.RangeSpliterator prefix : range.splitDown(partSize)) {
+                ScanPart part = new ScanPart(prefix, partSize, words);
+                part.fork();
+                forked.add(part);
+            }
+            TransactionSnapshot.Cursor cursor = range.cursor();
+            while (cursor.next()) {
+                if (filter.matchesRow(cursor)) {
+                    int position = cursor.position();
+                    words[position >>> 6] |= 1L << position;
+                }
+            }
+            for (ScanPart part : forked) {
+                part.join();
+            }
+        }
+    }
+
+    // Parallel and sequential filtering find the same transactions
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ParallelFilter)) {
+            return false;
+        }
+        return filter.equals(((ParallelFilter) other).filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return filter.hashCode();
+    }
+}
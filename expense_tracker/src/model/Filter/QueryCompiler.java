@@ -0,0 +1,138 @@
+package model.Filter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+import model.CategoryDictionary;
+
+/**
+ * The QueryCompiler turns the filter tree of a query into one MethodHandle
+ * of type (long amountCents, long timestampMillis, int categoryOrdinal)
+ * boolean. Every comparison is a static method with its constants bound, and
+ * AND, OR and NOT become guardWithTest and filterReturnValue combinators, so
+ * a scan makes one call per row to a handle the JIT compiles as a whole,
+ * instead of one interface call per node of the tree.
+ *
+ * AND and OR short-circuit like the filters do.
+ */
+final class QueryCompiler {
+    static final MethodType PREDICATE = MethodType.methodType(boolean.class, long.class, long.class, int.class);
+
+    private static final MethodHandle BETWEEN;
+    private static final MethodHandle IN_RANGE;
+    private static final MethodHandle CATEGORY_IS;
+    private static final MethodHandle NOT;
+    private static final MethodHandle TRUE;
+    private static final MethodHandle FALSE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType compare = MethodType.methodType(boolean.class, long.class, long.class, long.class);
+            BETWEEN = lookup.findStatic(QueryCompiler.class, "between", compare);
+            IN_RANGE = lookup.findStatic(QueryCompiler.class, "inRange", compare);
+            CATEGORY_IS = lookup.findStatic(QueryCompiler.class, "categoryIs",
+                    MethodType.methodType(boolean.class, CategoryRef.class, int.class));
+            NOT = lookup.findStatic(QueryCompiler.class, "not", MethodType.methodType(boolean.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        TRUE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0,
+                PREDICATE.parameterList());
+        FALSE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0,
+                PREDICATE.parameterList());
+    }
+
+    private QueryCompiler() {
+    }
+
+    /**
+     * @param filter a filter tree made by the QueryParser
+     * @return the predicate of the filter, of type PREDICATE
+     */
+    static MethodHandle compile(IncrementalFilter filter) {
+        if (filter instanceof AndFilter) {
+            // a && b: if a then b else false, right to left
+            List<IncrementalFilter> parts = ((AndFilter) filter).getFilters();
+            MethodHandle predicate = compile(parts.get(parts.size() - 1));
+            for (int i = parts.size() - 2; i >= 0; i--) {
+                predicate = MethodHandles.guardWithTest(compile(parts.get(i)), predicate, FALSE);
+            }
+            return predicate;
+        }
+        if (filter instanceof OrFilter) {
+            // a || b: if a then true else b
+            List<IncrementalFilter> parts = ((OrFilter) filter).getFilters();
+            MethodHandle predicate = compile(parts.get(parts.size() - 1));
+            for (int i = parts.size() - 2; i >= 0; i--) {
+                predicate = MethodHandles.guardWithTest(compile(parts.get(i)), TRUE, predicate);
+            }
+            return predicate;
+        }
+        if (filter instanceof NotFilter) {
+            return MethodHandles.filterReturnValue(compile(((NotFilter) filter).getFilter()), NOT);
+        }
+        if (filter instanceof AmountRangeFilter) {
+            AmountRangeFilter range = (AmountRangeFilter) filter;
+            MethodHandle between = MethodHandles.insertArguments(BETWEEN, 0, range.getMinCents(), range.getMaxCents());
+            return MethodHandles.dropArguments(between, 1, long.class, int.class);
+        }
+        if (filter instanceof AmountFilter) {
+            long cents = ((AmountFilter) filter).getAmountCents();
+            MethodHandle between = MethodHandles.insertArguments(BETWEEN, 0, cents, cents);
+            return MethodHandles.dropArguments(between, 1, long.class, int.class);
+        }
+        if (filter instanceof DateRangeFilter) {
+            DateRangeFilter range = (DateRangeFilter) filter;
+            MethodHandle inRange = MethodHandles.insertArguments(IN_RANGE, 0, range.getFromMillis(),
+                    range.getToMillis());
+            return MethodHandles.dropArguments(MethodHandles.dropArguments(inRange, 1, int.class), 0, long.class);
+        }
+        if (filter instanceof CategoryFilter) {
+            MethodHandle categoryIs = MethodHandles.insertArguments(CATEGORY_IS, 0,
+                    new CategoryRef(((CategoryFilter) filter).getCategory()));
+            return MethodHandles.dropArguments(categoryIs, 0, long.class, long.class);
+        }
+        throw new IllegalArgumentException("Cannot compile the filter " + filter);
+    }
+
+    private static boolean between(long min, long max, long value) {
+        return value >= min && value <= max;
+    }
+
+    private static boolean inRange(long from, long to, long value) {
+        return value >= from && value < to;
+    }
+
+    // A category that was never stored has no ordinal, and matches nothing,
+    // not even another such category
+    private static boolean categoryIs(CategoryRef category, int ordinal) {
+        return ordinal != CategoryDictionary.UNKNOWN && ordinal == category.ordinal();
+    }
+
+    private static boolean not(boolean value) {
+        return !value;
+    }
+
+    // The ordinal of a category, looked up again until some transaction has
+    // used the category; after that it never changes
+    private static final class CategoryRef {
+        private final String name;
+        private volatile int ordinal = CategoryDictionary.UNKNOWN;
+
+        CategoryRef(String name) {
+            this.name = name;
+        }
+
+        int ordinal() {
+            int known = ordinal;
+            if (known == CategoryDictionary.UNKNOWN) {
+                known = CategoryDictionary.ordinalOf(name);
+                ordinal = known;
+            }
+            return known;
+        }
+    }
+}
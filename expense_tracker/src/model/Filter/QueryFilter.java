@@ -0,0 +1,203 @@
+package model.Filter;
+
+import java.lang.invoke.MethodHandle;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import model.CategoryDictionary;
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The QueryFilter keeps the transactions that match a text query, such as
+ *
+ * <pre>
+ * category=food and amount&gt;=20 and date&gt;=2026-01-01
+ * </pre>
+ *
+ * See QueryParser for the grammar. The query is parsed into a tree of the
+ * filters of this package, which the FilterPlanner answers from the indexes
+ * where it can. When the plan would read every row anyway, the rows are
+ * tested in one pass with the predicate that the QueryCompiler made of the
+ * tree, which reads the columns of the snapshot directly.
+ *
+ * Queries are cached by their normalized text, so the same query typed again,
+ * in any case and spacing, is neither parsed nor compiled again.
+ */
+public class QueryFilter implements IncrementalFilter {
+    private static final int CACHE_CAPACITY = 256;
+    // The compiled queries by normalized text, least recently used first
+    private static final Map<String, QueryFilter> cache = new LinkedHashMap<String, QueryFilter>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryFilter> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    private final String query;
+    private final IncrementalFilter filter;
+    private final MethodHandle predicate;
+
+    private QueryFilter(String query, IncrementalFilter filter, MethodHandle predicate) {
+        this.query = query;
+        this.filter = filter;
+        this.predicate = predicate;
+    }
+
+    /**
+     * @param query the text of the query
+     * @return the filter of the query
+     * @throws IllegalArgumentException if the query is not valid, with the
+     *         position of the error in the message
+     */
+    public static QueryFilter parse(String query) {
+        String normalized = QueryParser.normalize(query);
+        synchronized (cache) {
+            QueryFilter cached = cache.get(normalized);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        IncrementalFilter filter = QueryParser.parse(query);
+        QueryFilter compiled = new QueryFilter(normalized, filter, QueryCompiler.compile(filter));
+        synchronized (cache) {
+            cache.put(normalized, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the normalized text of the query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the filter tree of the query
+     */
+    public IncrementalFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return FilterResults.transactionsAt((TransactionSnapshot) transactions, matchingPositions(transactions));
+        }
+        return IncrementalFilter.super.filter(transactions);
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        int ordinal = CategoryDictionary.ordinalOf(transaction.getCategory());
+        if (ordinal == CategoryDictionary.UNKNOWN) {
+            // No model has stored the category yet, so it has no ordinal; the
+            // filter tree compares the names instead
+            return filter.matches(transaction);
+        }
+        return test(transaction.getAmountCents(), transaction.getTimestampMillis(), ordinal);
+    }
+
+    @Override
+    public boolean matchesRow(TransactionSnapshot.Cursor cursor) {
+        return test(cursor.amountCents(), cursor.timestamp(), cursor.categoryOrdinal());
+    }
+
+    @Override
+    public BitSet matchingPositions(List<Transaction> transactions) {
+        if (!(transactions instanceof TransactionSnapshot)) {
+            return IncrementalFilter.super.matchingPositions(transactions);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        FilterPlan plan = FilterPlanner.plan(filter, snapshot);
+        if (plan.getEstimatedCost() < snapshot.size()) {
+            return plan.execute();
+        }
+        // The plan reads every row anyway, so one pass with the compiled
+        // predicate is cheaper
+        BitSet positions = new BitSet(snapshot.size());
+        TransactionSnapshot.Cursor cursor = snapshot.cursor();
+        while (cursor.next()) {
+            if (test(cursor.amountCents(), cursor.timestamp(), cursor.categoryOrdinal())) {
+                positions.set(cursor.position());
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns a lazy stream of the matches. A snapshot is walked with its
+     * cursor and tested with the compiled predicate, so the stream stops
+     * reading the columns as soon as its terminal operation is done.
+     */
+    @Override
+    public Stream<Transaction> stream(List<Transaction> transactions) {
+        if (!(transactions instanceof TransactionSnapshot)) {
+            return transactions.stream().filter(this::matches);
+        }
+        TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+        TransactionSnapshot.Cursor cursor = snapshot.cursor();
+        Spliterator<Transaction> matches = new Spliterators.AbstractSpliterator<Transaction>(snapshot.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Transaction> action) {
+                while (cursor.next()) {
+                    if (test(cursor.amountCents(), cursor.timestamp(), cursor.categoryOrdinal())) {
+                        action.accept(cursor.transaction());
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+        return StreamSupport.stream(matches, false);
+    }
+
+    /**
+     * @param transactions a snapshot
+     * @return the plan the query is answered with, see FilterPlan.explain
+     */
+    public String explain(TransactionSnapshot transactions) {
+        return FilterPlanner.explain(filter, transactions);
+    }
+
+    private boolean test(long amountCents, long timestampMillis, int categoryOrdinal) {
+        try {
+            return (boolean) predicate.invokeExact(amountCents, timestampMillis, categoryOrdinal);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // The predicates only compare numbers
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof QueryFilter)) {
+            return false;
+        }
+        return query.equals(((QueryFilter) other).query);
+    }
+
+    @Override
+    public int hashCode() {
+        return query.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+}
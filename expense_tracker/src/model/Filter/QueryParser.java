@@ -0,0 +1,239 @@
+package model.Filter;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import model.Money;
+
+/**
+ * The QueryParser turns the text of a query into a tree of the filters of
+ * this package. The grammar is
+ *
+ * <pre>
+ * query      := and ("or" and)*
+ * and        := unary ("and" unary)*
+ * unary      := "not" unary | "(" query ")" | comparison
+ * comparison := "category" ("=" | "!=") name
+ *             | "amount" op number
+ *             | "date" op yyyy-MM-dd
+ * op         := "=" | "!=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;="
+ * </pre>
+ *
+ * Keywords and fields are not case sensitive. A date is a whole day in the
+ * time zone the timestamps are shown in, so "date=2026-01-01" is that day
+ * and "date&gt;2026-01-01" starts on the next one.
+ */
+final class QueryParser {
+    private static final String OPERATOR_CHARS = "=!<>";
+
+    private final List<String> tokens;
+    private final List<Integer> offsets;
+    private int next;
+
+    private QueryParser(List<String> tokens, List<Integer> offsets) {
+        this.tokens = tokens;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param query the text of a query
+     * @return the text with one space between the tokens, and the keywords,
+     *         fields and category names in lower case
+     */
+    static String normalize(String query) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(query, tokens, new ArrayList<>());
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * @param query the text of a query
+     * @return the filter of the query
+     */
+    static IncrementalFilter parse(String query) {
+        List<String> tokens = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        tokenize(query, tokens, offsets);
+        QueryParser parser = new QueryParser(tokens, offsets);
+        IncrementalFilter filter = parser.parseOr();
+        if (parser.next < tokens.size()) {
+            throw parser.error("unexpected '" + tokens.get(parser.next) + "'");
+        }
+        return filter;
+    }
+
+    // Splits the query into words, operators and parentheses. Everything but
+    // the numbers and dates is put in lower case, as nothing else is case
+    // sensitive.
+    private static void tokenize(String query, List<String> tokens, List<Integer> offsets) {
+        if (query == null) {
+            throw new IllegalArgumentException("Invalid query: the query must be non-null");
+        }
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '(' || c == ')') {
+                i++;
+            } else if (OPERATOR_CHARS.indexOf(c) >= 0) {
+                while (i < query.length() && OPERATOR_CHARS.indexOf(query.charAt(i)) >= 0) {
+                    i++;
+                }
+            } else {
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && OPERATOR_CHARS.indexOf(query.charAt(i)) < 0 && query.charAt(i) != '('
+                        && query.charAt(i) != ')') {
+                    i++;
+                }
+            }
+            tokens.add(query.substring(start, i).toLowerCase(Locale.ROOT));
+            offsets.add(start);
+        }
+    }
+
+    private IncrementalFilter parseOr() {
+        List<IncrementalFilter> parts = new ArrayList<>();
+        parts.add(parseAnd());
+        while (accept("or")) {
+            parts.add(parseAnd());
+        }
+        return (parts.size() == 1) ? parts.get(0) : new OrFilter(parts);
+    }
+
+    private IncrementalFilter parseAnd() {
+        List<IncrementalFilter> parts = new ArrayList<>();
+        parts.add(parseUnary());
+        while (accept("and")) {
+            parts.add(parseUnary());
+        }
+        return (parts.size() == 1) ? parts.get(0) : new AndFilter(parts);
+    }
+
+    private IncrementalFilter parseUnary() {
+        if (accept("not")) {
+            return new NotFilter(parseUnary());
+        }
+        if (accept("(")) {
+            IncrementalFilter filter = parseOr();
+            expect(")");
+            return filter;
+        }
+        String field = take("a field");
+        int fieldIndex = next - 1;
+        String operator = take("an operator");
+        String value = take("a value");
+        try {
+            switch (field) {
+            case "category":
+                return category(operator, value);
+            case "amount":
+                return amount(operator, Money.toCents(Double.parseDouble(value)));
+            case "date":
+                return date(operator, LocalDate.parse(value));
+            default:
+                next = fieldIndex;
+                throw error("unknown field '" + field + "'");
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            next--;
+            throw error("invalid " + field + " '" + value + "'");
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage() != null && e.getMessage().startsWith("Invalid query")) {
+                throw e;
+            }
+            next--;
+            throw error(e.getMessage() + " '" + value + "'");
+        }
+    }
+
+    private IncrementalFilter category(String operator, String name) {
+        switch (operator) {
+        case "=":
+            return new CategoryFilter(name);
+        case "!=":
+            return new NotFilter(new CategoryFilter(name));
+        default:
+            next -= 2;
+            throw error("a category can only be compared with = or !=");
+        }
+    }
+
+    private IncrementalFilter amount(String operator, long cents) {
+        switch (operator) {
+        case "=":
+            return AmountRangeFilter.ofCents(cents, cents);
+        case "!=":
+            return new NotFilter(AmountRangeFilter.ofCents(cents, cents));
+        case "<":
+            return AmountRangeFilter.ofCents(0, cents - 1);
+        case "<=":
+            return AmountRangeFilter.ofCents(0, cents);
+        case ">":
+            return AmountRangeFilter.ofCents(cents + 1, Long.MAX_VALUE);
+        case ">=":
+            return AmountRangeFilter.ofCents(cents, Long.MAX_VALUE);
+        default:
+            next -= 2;
+            throw error("unknown operator '" + operator + "'");
+        }
+    }
+
+    private IncrementalFilter date(String operator, LocalDate day) {
+        ZoneId zone = ZoneId.systemDefault();
+        long start = Math.max(0, day.atStartOfDay(zone).toInstant().toEpochMilli());
+        long end = Math.max(0, day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+        switch (operator) {
+        case "=":
+            return new DateRangeFilter(start, end);
+        case "!=":
+            return new NotFilter(new DateRangeFilter(start, end));
+        case "<":
+            return new DateRangeFilter(0, start);
+        case "<=":
+            return new DateRangeFilter(0, end);
+        case ">":
+            return new DateRangeFilter(end, Long.MAX_VALUE);
+        case ">=":
+            return new DateRangeFilter(start, Long.MAX_VALUE);
+        default:
+            next -= 2;
+            throw error("unknown operator '" + operator + "'");
+        }
+    }
+
+    private boolean accept(String token) {
+        if (next < tokens.size() && tokens.get(next).equals(token)) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("expected '" + token + "'");
+        }
+    }
+
+    private String take(String what) {
+        if (next == tokens.size()) {
+            throw error("expected " + what);
+        }
+        return tokens.get(next++);
+    }
+
+    private IllegalArgumentException error(String reason) {
+        if (next >= tokens.size()) {
+            return new IllegalArgumentException("Invalid query at the end: " + reason);
+        }
+        return new IllegalArgumentException("Invalid query at " + (offsets.get(next) + 1) + ": " + reason);
+    }
+}
@@ -0,0 +1,324 @@
+package model.Filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+import model.TransactionIndex;
+import model.TransactionSnapshot;
+
+/**
+ * The SortedKeyIndex keeps the transactions sorted by one {@code long} key,
+ * such as the amount or the timestamp, for range queries. The subclasses
+ * choose the key and name the queries.
+ *
+ * The index is a primitive sorted array of (key, slot) pairs. A transaction
+ * whose key is not below the last key of that array is appended to it in
+ * O(1), which is the usual case for keys that grow over time. Any other
+ * transaction goes into a small sorted delta buffer (the out-of-order tail),
+ * which is merged into the main array once it grows past about the square
+ * root of the main array, which keeps such an insert at O(sqrt n) amortized.
+ * Removed slots are only marked, and dropped at the next merge, which
+ * happens at the latest when half of the entries are removed.
+ *
+ * A range query is a binary search in both arrays and a walk over the k
+ * matching entries. While all keys arrived in order, the matching slots are
+ * already ascending and the query is O(log n + k), otherwise they are sorted
+ * first, O(log n + k log k). A query for the set of the positions, which has
+ * no order, never sorts and is always O(log n + k).
+ */
+public abstract class SortedKeyIndex implements TransactionIndex {
+
+    private static final int MIN_DELTA_LIMIT = 64;
+
+    private long[] mainKeys = new long[16];
+    private int[] mainSlots = new int[16];
+    private int mainSize;
+    // True while the slots of the main array are ascending as well
+    private boolean mainSlotsAscending = true;
+    private long[] deltaKeys = new long[MIN_DELTA_LIMIT];
+    private int[] deltaSlots = new int[MIN_DELTA_LIMIT];
+    private int deltaSize;
+    private final BitSet removedSlots = new BitSet();
+    private int removedCount;
+
+    /**
+     * @param t a transaction
+     * @return the key of the transaction
+     */
+    protected abstract long keyOf(Transaction t);
+
+    /**
+     * @param cursor a cursor on a transaction
+     * @return the key of the current transaction, read from its columns
+     */
+    protected abstract long keyOf(TransactionSnapshot.Cursor cursor);
+
+    @Override
+    public void added(int slot, Transaction t) {
+        long key = keyOf(t);
+        if (mainSize == 0 || key >= mainKeys[mainSize - 1]) {
+            // In order: the slot is also higher than every slot before it
+            if (mainSize == mainKeys.length) {
+                mainKeys = Arrays.copyOf(mainKeys, mainSize * 2);
+                mainSlots = Arrays.copyOf(mainSlots, mainSize * 2);
+            }
+            mainKeys[mainSize] = key;
+            mainSlots[mainSize++] = slot;
+            return;
+        }
+        // After the equal keys, which all have lower slots
+        int index = upperBound(deltaKeys, deltaSize, key);
+        if (deltaSize == deltaKeys.length) {
+            deltaKeys = Arrays.copyOf(deltaKeys, deltaSize * 2);
+            deltaSlots = Arrays.copyOf(deltaSlots, deltaSize * 2);
+        }
+        System.arraycopy(deltaKeys, index, deltaKeys, index + 1, deltaSize - index);
+        System.arraycopy(deltaSlots, index, deltaSlots, index + 1, deltaSize - index);
+        deltaKeys[index] = key;
+        deltaSlots[index] = slot;
+        deltaSize++;
+        if (deltaSize > Math.max(MIN_DELTA_LIMIT, (int) Math.sqrt(mainSize))) {
+            merge();
+        }
+    }
+
+    @Override
+    public void removed(int slot, Transaction t) {
+        removedSlots.set(slot);
+        removedCount++;
+        if (removedCount * 2 >= mainSize + deltaSize) {
+            merge();
+        }
+    }
+
+    @Override
+    public void reset(TransactionSnapshot transactions) {
+        int size = transactions.size();
+        long[] keys = new long[Math.max(16, size)];
+        int[] slots = new int[keys.length];
+        boolean sorted = true;
+        TransactionSnapshot.Cursor cursor = transactions.cursor();
+        while (cursor.next()) {
+            int position = cursor.position();
+            keys[position] = keyOf(cursor);
+            slots[position] = cursor.slot();
+            sorted &= position == 0 || keys[position - 1] <= keys[position];
+        }
+        if (!sorted) {
+            sort(keys, slots, size);
+        }
+        mainKeys = keys;
+        mainSlots = slots;
+        mainSize = size;
+        mainSlotsAscending = sorted;
+        deltaSize = 0;
+        removedSlots.clear();
+        removedCount = 0;
+    }
+
+    /**
+     * Finds the transactions whose key is between the given bounds.
+     *
+     * @param minKey the lowest key (inclusive)
+     * @param maxKey the highest key (inclusive)
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions, in ascending order
+     */
+    protected int[] positionsBetween(long minKey, long maxKey, TransactionSnapshot transactions) {
+        if (minKey > maxKey) {
+            return new int[0];
+        }
+        int deltaFrom = lowerBound(deltaKeys, deltaSize, minKey);
+        int deltaTo = upperBound(deltaKeys, deltaSize, maxKey);
+        int[] slots = slotsBetween(minKey, maxKey);
+        int count = slots.length;
+        if (!mainSlotsAscending || deltaFrom < deltaTo) {
+            Arrays.sort(slots, 0, count);
+        }
+        return transactions.positionsOfSlots(slots, count);
+    }
+
+    /**
+     * Finds the transactions whose key is between the given bounds, as a set,
+     * in O(log n + k): the slots are not sorted first.
+     *
+     * @param minKey the lowest key (inclusive)
+     * @param maxKey the highest key (inclusive)
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions
+     */
+    protected BitSet positionSetBetween(long minKey, long maxKey, TransactionSnapshot transactions) {
+        if (minKey > maxKey) {
+            return new BitSet();
+        }
+        int[] slots = slotsBetween(minKey, maxKey);
+        return transactions.positionSetOfSlots(slots, slots.length);
+    }
+
+    // The slots of the keys between the bounds that are not removed, main
+    // array first
+    private int[] slotsBetween(long minKey, long maxKey) {
+        int mainFrom = lowerBound(mainKeys, mainSize, minKey);
+        int mainTo = upperBound(mainKeys, mainSize, maxKey);
+        int deltaFrom = lowerBound(deltaKeys, deltaSize, minKey);
+        int deltaTo = upperBound(deltaKeys, deltaSize, maxKey);
+        int[] slots = new int[(mainTo - mainFrom) + (deltaTo - deltaFrom)];
+        int count = collect(mainSlots, mainFrom, mainTo, slots, 0);
+        count = collect(deltaSlots, deltaFrom, deltaTo, slots, count);
+        return (count == slots.length) ? slots : Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Estimates the number of transactions whose key is between the given
+     * bounds in O(log n), for query planning. The removed entries that are
+     * not merged out yet are assumed to be spread evenly over the keys.
+     *
+     * @param minKey the lowest key (inclusive)
+     * @param maxKey the highest key (inclusive)
+     * @return the estimated number of transactions
+     */
+    protected int countBetween(long minKey, long maxKey) {
+        if (minKey > maxKey) {
+            return 0;
+        }
+        int entries = (upperBound(mainKeys, mainSize, maxKey) - lowerBound(mainKeys, mainSize, minKey))
+                + (upperBound(deltaKeys, deltaSize, maxKey) - lowerBound(deltaKeys, deltaSize, minKey));
+        if (removedCount == 0) {
+            return entries;
+        }
+        return (int) Math.round(entries * (1 - (double) removedCount / (mainSize + deltaSize)));
+    }
+
+    /**
+     * Walks the transactions from the highest key down, and returns the first
+     * k slots that the given test accepts. Equal keys are walked from the
+     * highest slot down, so the later transaction comes first. The cost is
+     * O(k) while most transactions are accepted, and grows as fewer are.
+     *
+     * @param k the number of slots to return
+     * @param accept the test of a slot
+     * @return at most k slots, highest key first
+     */
+    protected int[] highestSlots(int k, IntPredicate accept) {
+        int[] slots = new int[Math.min(k, mainSize + deltaSize)];
+        int count = 0;
+        int i = mainSize - 1;
+        int j = deltaSize - 1;
+        while (count < slots.length && (i >= 0 || j >= 0)) {
+            boolean fromMain = j < 0 || (i >= 0 && (mainKeys[i] > deltaKeys[j]
+                    || (mainKeys[i] == deltaKeys[j] && mainSlots[i] > deltaSlots[j])));
+            int slot = fromMain ? mainSlots[i--] : deltaSlots[j--];
+            if ((removedCount == 0 || !removedSlots.get(slot)) && accept.test(slot)) {
+                slots[count++] = slot;
+            }
+        }
+        return (count == slots.length) ? slots : Arrays.copyOf(slots, count);
+    }
+
+    // Copies the slots that are not removed
+    private int collect(int[] source, int from, int to, int[] target, int count) {
+        for (int i = from; i < to; i++) {
+            if (removedCount == 0 || !removedSlots.get(source[i])) {
+                target[count++] = source[i];
+            }
+        }
+        return count;
+    }
+
+    // Merges the delta into the main array, without the removed slots
+    private void merge() {
+        int size = mainSize + deltaSize - removedCount;
+        long[] keys = new long[Math.max(16, size)];
+        int[] slots = new int[keys.length];
+        boolean slotsAscending = true;
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < mainSize || j < deltaSize) {
+            boolean fromMain = j == deltaSize || (i < mainSize && (mainKeys[i] < deltaKeys[j]
+                    || (mainKeys[i] == deltaKeys[j] && mainSlots[i] < deltaSlots[j])));
+            long key = fromMain ? mainKeys[i] : deltaKeys[j];
+            int slot = fromMain ? mainSlots[i++] : deltaSlots[j++];
+            if (removedCount == 0 || !removedSlots.get(slot)) {
+                slotsAscending &= k == 0 || slots[k - 1] < slot;
+                keys[k] = key;
+                slots[k++] = slot;
+            }
+        }
+        mainKeys = keys;
+        mainSlots = slots;
+        mainSize = size;
+        mainSlotsAscending = slotsAscending;
+        deltaSize = 0;
+        removedSlots.clear();
+        removedCount = 0;
+    }
+
+    // The first index whose key is >= the given key
+    private static int lowerBound(long[] keys, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // The first index whose key is > the given key
+    private static int upperBound(long[] keys, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Stable bottom-up merge sort of both arrays by key, so that equal keys
+    // stay in slot order
+    private static void sort(long[] keys, int[] slots, int size) {
+        long[] fromKeys = keys;
+        int[] fromSlots = slots;
+        long[] toKeys = new long[size];
+        int[] toSlots = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int middle = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                int i = low;
+                int j = middle;
+                for (int k = low; k < high; k++) {
+                    if (j == high || (i < middle && fromKeys[i] <= fromKeys[j])) {
+                        toKeys[k] = fromKeys[i];
+                        toSlots[k] = fromSlots[i++];
+                    } else {
+                        toKeys[k] = fromKeys[j];
+                        toSlots[k] = fromSlots[j++];
+                    }
+                }
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            int[] swapSlots = fromSlots;
+            fromSlots = toSlots;
+            toSlots = swapSlots;
+        }
+        if (fromKeys != keys) {
+            System.arraycopy(fromKeys, 0, keys, 0, size);
+            System.arraycopy(fromSlots, 0, slots, 0, size);
+        }
+    }
+}
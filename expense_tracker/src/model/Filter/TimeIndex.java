@@ -0,0 +1,57 @@
+package model.Filter;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * The TimeIndex keeps the transactions sorted by timestamp, so that a date
+ * range is found with a binary search instead of a scan of the whole ledger.
+ *
+ * Transactions created in the application are appended in time order and go
+ * straight to the end of the sorted array. Imported transactions that carry
+ * an older timestamp of their own go to the out-of-order tail. See
+ * SortedKeyIndex for the structure and the costs.
+ *
+ * NOTE) The ExpenseTrackerModel attaches one TimeIndex to its store; filters
+ * find it with TransactionSnapshot.getIndex(TimeIndex.class).
+ */
+public final class TimeIndex extends SortedKeyIndex {
+
+    @Override
+    protected long keyOf(Transaction t) {
+        return t.getTimestampMillis();
+    }
+
+    @Override
+    protected long keyOf(TransactionSnapshot.Cursor cursor) {
+        return cursor.timestamp();
+    }
+
+    /**
+     * Finds the transactions with a timestamp in [fromMillis, toMillis).
+     *
+     * @param fromMillis the start, in epoch milliseconds (inclusive)
+     * @param toMillis the end, in epoch milliseconds (exclusive)
+     * @param transactions the current snapshot of the store
+     * @return the positions of the transactions, in ascending order
+     */
+    public int[] positionsInRange(long fromMillis, long toMillis, TransactionSnapshot transactions) {
+        if (fromMillis >= toMillis) {
+            return new int[0];
+        }
+        return super.positionsBetween(fromMillis, toMillis - 1, transactions);
+    }
+
+    /**
+     * @param fromMillis the start, in epoch milliseconds (inclusive)
+     * @param toMillis the end, in epoch milliseconds (exclusive)
+     * @return the estimated number of transactions in [fromMillis, toMillis),
+     *         see SortedKeyIndex.countBetween
+     */
+    public int countInRange(long fromMillis, long toMillis) {
+        if (fromMillis >= toMillis) {
+            return 0;
+        }
+        return super.countBetween(fromMillis, toMillis - 1);
+    }
+}
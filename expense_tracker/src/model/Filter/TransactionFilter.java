@@ -1,6 +1,12 @@
 package model.Filter;
 
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import model.Transaction;
 
@@ -13,4 +19,74 @@ public interface TransactionFilter {
 
   public List<Transaction> filter(List<Transaction> transactions);
 
+  /**
+   * Returns the positions of the matching transactions in the given list, so
+   * that the caller does not have to look each filtered transaction up again.
+   * The filters of this package find the positions while they scan, or from
+   * an index of the model. The default implementation bridges older filters:
+   * it calls {@code filter} and marks the filtered transactions in one pass
+   * over the list.
+   *
+   * @param transactions the transactions to filter
+   * @return the positions of the matching transactions
+   */
+  public default BitSet matchingPositions(List<Transaction> transactions) {
+    // Transactions are compared by identity, like indexOf does for them
+    Set<Transaction> filtered = Collections.newSetFromMap(new IdentityHashMap<Transaction, Boolean>());
+    filtered.addAll(filter(transactions));
+    BitSet positions = new BitSet(transactions.size());
+    int position = 0;
+    for (Transaction transaction : transactions) {
+      if (filtered.contains(transaction)) {
+        positions.set(position);
+      }
+      position++;
+    }
+    return positions;
+  }
+
+  /**
+   * Returns the matching transactions as a stream, in list order. The
+   * filters that can test one transaction on their own (IncrementalFilter)
+   * return a lazy stream, which only scans as far as its terminal operation
+   * needs. The default implementation streams the result of {@code filter}.
+   *
+   * @param transactions the transactions to filter
+   * @return the stream of the matching transactions
+   */
+  public default Stream<Transaction> stream(List<Transaction> transactions) {
+    return filter(transactions).stream();
+  }
+
+  /**
+   * @param transactions the transactions to filter
+   * @return the number of matching transactions, counted from their positions
+   *         so that no list is built
+   */
+  public default long count(List<Transaction> transactions) {
+    return matchingPositions(transactions).cardinality();
+  }
+
+  /**
+   * @param transactions the transactions to filter
+   * @return true if any transaction matches; a lazy stream stops at the first
+   *         match
+   */
+  public default boolean anyMatch(List<Transaction> transactions) {
+    return stream(transactions).findFirst().isPresent();
+  }
+
+  /**
+   * @param transactions the transactions to filter
+   * @param n the number of matches to return
+   * @return the first n matching transactions, or all of them if there are
+   *         fewer; a lazy stream stops at the n-th match
+   */
+  public default List<Transaction> firstN(List<Transaction> transactions, int n) {
+    if (n < 0) {
+      throw new IllegalArgumentException("The number of transactions must not be negative.");
+    }
+    return stream(transactions).limit(n).collect(Collectors.toList());
+  }
+
 }
@@ -0,0 +1,82 @@
+package model;
+
+/**
+ * The {@code FilterCacheStats} are the counters of the filter result cache of
+ * the {@code ExpenseTrackerModel}, taken at one point in time, for tuning the
+ * capacity of the cache ({@code ExpenseTrackerModel.setFilterCacheCapacity}).
+ */
+public final class FilterCacheStats {
+
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long invalidations;
+  private final int size;
+  private final int capacity;
+
+  FilterCacheStats(long hits, long misses, long evictions, long invalidations, int size, int capacity) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.invalidations = invalidations;
+    this.size = size;
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return the number of filters whose matches were found in the cache
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of filters that had to be applied to the transactions
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of results dropped to make room for newer ones
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of results dropped because the transactions changed in
+   *         a way they could not follow
+   */
+  public long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * @return the number of results in the cache
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return the highest number of results the cache holds
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the share of the lookups that were hits, or 0 if there were none
+   */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return (lookups == 0) ? 0 : (double) hits / lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "FilterCacheStats[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+        + ", invalidations=" + invalidations + ", size=" + size + "/" + capacity + "]";
+  }
+}
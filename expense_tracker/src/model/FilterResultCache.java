@@ -0,0 +1,143 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.Filter.IncrementalFilter;
+import model.Filter.TransactionFilter;
+
+/**
+ * The {@code FilterResultCache} keeps the matches of the filters applied
+ * lately, so that going back to one of them does not filter all transactions
+ * again. Filters are the keys, so filters with value equality (like the
+ * built-in ones) share a result.
+ * <p>
+ * The cache is a {@code TransactionIndex} of the store, so every result stays
+ * valid for the current version of the transactions: the results of an
+ * {@code IncrementalFilter} are patched on every add and remove, like the
+ * matches of the active filter, and any other result is dropped. A reset
+ * renumbers the slots, so it drops all results.
+ * <p>
+ * The least recently used result is evicted once the cache is full.
+ */
+final class FilterResultCache implements TransactionIndex {
+
+  private static final class Entry {
+    final SlotBitmap slots;
+    // The positions of the slots for the current version, or null
+    RowBitmap rows;
+
+    Entry(SlotBitmap slots, RowBitmap rows) {
+      this.slots = slots;
+      this.rows = rows;
+    }
+  }
+
+  private final LinkedHashMap<TransactionFilter, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private int capacity;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  FilterResultCache(int capacity) {
+    setCapacity(capacity);
+  }
+
+  void setCapacity(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The filter cache capacity must not be negative.");
+    }
+    this.capacity = capacity;
+    evictOverflow();
+  }
+
+  /**
+   * @param filter a filter
+   * @return a copy of the cached matching slots of the filter, or null
+   */
+  SlotBitmap slotsOf(TransactionFilter filter) {
+    Entry entry = entries.get(filter);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.slots.copy();
+  }
+
+  /**
+   * @param filter a filter whose slots were just returned by a hit
+   * @return the cached positions of the matches, or null if not known yet
+   */
+  RowBitmap rowsOf(TransactionFilter filter) {
+    Entry entry = entries.get(filter);
+    return (entry == null) ? null : entry.rows;
+  }
+
+  /**
+   * Caches the matches of the filter for the current transactions.
+   *
+   * @param filter the filter
+   * @param slots the matching slots, which the cache keeps a copy of
+   * @param rows the matching positions, or null
+   */
+  void put(TransactionFilter filter, SlotBitmap slots, RowBitmap rows) {
+    if (capacity == 0) {
+      return;
+    }
+    entries.put(filter, new Entry(slots.copy(), rows));
+    evictOverflow();
+  }
+
+  FilterCacheStats stats() {
+    return new FilterCacheStats(hits, misses, evictions, invalidations, entries.size(), capacity);
+  }
+
+  @Override
+  public void added(int slot, Transaction t) {
+    Iterator<Map.Entry<TransactionFilter, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<TransactionFilter, Entry> e = it.next();
+      if (!(e.getKey() instanceof IncrementalFilter)) {
+        it.remove();
+        invalidations++;
+      } else if (((IncrementalFilter) e.getKey()).matches(t)) {
+        e.getValue().slots.set(slot);
+        e.getValue().rows = null;
+      }
+    }
+  }
+
+  @Override
+  public void removed(int slot, Transaction t) {
+    Iterator<Map.Entry<TransactionFilter, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<TransactionFilter, Entry> e = it.next();
+      if (!(e.getKey() instanceof IncrementalFilter)) {
+        it.remove();
+        invalidations++;
+      } else {
+        e.getValue().slots.clear(slot);
+        // The positions after the slot shift
+        e.getValue().rows = null;
+      }
+    }
+  }
+
+  @Override
+  public void reset(TransactionSnapshot transactions) {
+    invalidations += entries.size();
+    entries.clear();
+  }
+
+  private void evictOverflow() {
+    Iterator<TransactionFilter> it = entries.keySet().iterator();
+    while (entries.size() > capacity) {
+      it.next();
+      it.remove();
+      evictions++;
+    }
+  }
+}
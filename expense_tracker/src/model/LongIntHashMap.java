@@ -0,0 +1,130 @@
+package model;
+
+/**
+ * A small open addressing hash map from {@code long} keys to {@code int}
+ * values, used to find the slot of a transaction from its id without boxing.
+ * <p>
+ * Collisions are resolved with linear probing, and removals shift the
+ * following entries back so that no tombstones are needed.
+ */
+final class LongIntHashMap {
+
+  static final int MISSING = -1;
+
+  private long[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+  private int mask;
+
+  LongIntHashMap() {
+    allocate(16);
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value of the key, or {@link #MISSING}
+   */
+  int get(long key) {
+    for (int i = indexOf(key); used[i]; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i];
+      }
+    }
+    return MISSING;
+  }
+
+  /**
+   * @param key the key
+   * @param value the value, must not be {@link #MISSING}
+   */
+  void put(long key, int value) {
+    int i = indexOf(key);
+    while (used[i]) {
+      if (keys[i] == key) {
+        values[i] = value;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    used[i] = true;
+    keys[i] = key;
+    values[i] = value;
+    // Keep the load factor at or below one half
+    if (++size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  /**
+   * @param key the key to remove
+   * @return the value the key had, or {@link #MISSING}
+   */
+  int remove(long key) {
+    int i = indexOf(key);
+    while (used[i]) {
+      if (keys[i] == key) {
+        int value = values[i];
+        deleteAt(i);
+        size--;
+        return value;
+      }
+      i = (i + 1) & mask;
+    }
+    return MISSING;
+  }
+
+  void clear() {
+    allocate(16);
+  }
+
+  // Backward shift deletion: move later entries of the same probe run into the hole
+  private void deleteAt(int hole) {
+    int i = hole;
+    while (true) {
+      i = (i + 1) & mask;
+      if (!used[i]) {
+        break;
+      }
+      int home = indexOf(keys[i]);
+      // The entry may move to the hole only if the hole lies on its probe path
+      boolean movable = (hole <= i) ? (home <= hole || home > i) : (home <= hole && home > i);
+      if (movable) {
+        keys[hole] = keys[i];
+        values[hole] = values[i];
+        hole = i;
+      }
+    }
+    used[hole] = false;
+  }
+
+  private int indexOf(long key) {
+    // Mix the bits, the ids are sequential
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+    size = 0;
+  }
+}
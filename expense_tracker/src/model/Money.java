@@ -0,0 +1,57 @@
+package model;
+
+/**
+ * The {@code Money} class is the fixed-point representation of amounts used
+ * throughout the model: a whole number of cents in a {@code long}.
+ * <p>
+ * The model, the filters and the aggregates work on the {@code long} cents
+ * directly, so sums are exact integer additions and comparisons are integer
+ * equality. The static helpers convert from and to the {@code double} amounts
+ * that the view and the {@code InputValidation} still use, and
+ * {@link #format(long)} prints an amount of cents.
+ */
+public final class Money {
+
+  public static final long CENTS_PER_UNIT = 100;
+
+  private Money() {
+  }
+
+  /**
+   * Converts a {@code double} amount to cents, rounding to the nearest cent.
+   *
+   * @param amount the amount
+   * @return the amount in cents
+   */
+  public static long toCents(double amount) {
+    if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+      throw new IllegalArgumentException("The amount must be a finite number.");
+    }
+    return Math.round(amount * CENTS_PER_UNIT);
+  }
+
+  /**
+   * Converts cents back to a {@code double} amount, for callers that still
+   * work with {@code double}.
+   *
+   * @param cents the amount in cents
+   * @return the amount
+   */
+  public static double toAmount(long cents) {
+    return (double) cents / CENTS_PER_UNIT;
+  }
+
+  /**
+   * Formats cents with two decimals, for example {@code -1.05}.
+   *
+   * @param cents the amount in cents
+   * @return the formatted amount
+   */
+  public static String format(long cents) {
+    // Negates the quotient and remainder rather than the cents, which would
+    // stay negative for Long.MIN_VALUE
+    long units = Math.abs(cents / CENTS_PER_UNIT);
+    long fraction = Math.abs(cents % CENTS_PER_UNIT);
+    return ((cents < 0) ? "-" : "") + units + (fraction < 10 ? ".0" : ".") + fraction;
+  }
+}
@@ -0,0 +1,317 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code QuantileSketch} estimates the quantiles of a stream of
+ * {@code long} values, such as amounts in cents, in a small and fixed amount
+ * of memory. It is a KLL sketch (Karnin, Lang and Liberty, "Optimal Quantile
+ * Approximation in Streams", 2016).
+ * <p>
+ * The values are kept in levels; a value on level h stands for 2^h values.
+ * When a level is full it is sorted, and every other value, starting at a
+ * random offset, moves up one level while the rest are dropped. The capacity
+ * of the levels shrinks by 2/3 per level below the top one, so the sketch
+ * holds about 3k values plus a few per level, O(k + log(n / k)).
+ * <ul>
+ * <li>Error: the rank of an estimated quantile is within about 1.7% of the
+ * requested rank for the default k of 200, with a probability of 99%. The
+ * error shrinks about as 1/k. The minimum and maximum are exact.</li>
+ * <li>Cost: an update is O(1) amortized; the first query after a change sorts
+ * the retained values, O(k log k), and every query is then O(log k).</li>
+ * <li>Merging: {@link #merge(QuantileSketch)} adds the values of another
+ * sketch with the same k, for example of another shard or another month, and
+ * the result has the same error bound as one sketch of all values.</li>
+ * </ul>
+ * A sketch cannot delete values; see {@code ExpenseTrackerModel} for how it
+ * is rebuilt after removals. A sketch is not thread-safe.
+ */
+public final class QuantileSketch {
+
+  public static final int DEFAULT_K = 200;
+
+  private static final int MIN_K = 8;
+  private static final double LEVEL_RATIO = 2.0 / 3.0;
+
+  private final int k;
+  private final SplittableRandom random;
+  private long[][] levels = new long[1][];
+  private int[] sizes = new int[1];
+  private int levelCount = 1;
+  private long count;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+  // The retained values in ascending order with their cumulative weights,
+  // built by the first query after a change
+  private long[] sortedValues;
+  private long[] cumulativeWeights;
+
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * @param k the accuracy parameter, at least 8: the sketch keeps about 3k
+   *          values and its rank error is about 1/k
+   */
+  public QuantileSketch(int k) {
+    if (k < MIN_K) {
+      throw new IllegalArgumentException("The accuracy parameter must be at least " + MIN_K + ".");
+    }
+    this.k = k;
+    // A fixed seed, so that the same values always give the same estimates
+    this.random = new SplittableRandom(k);
+    levels[0] = new long[k];
+  }
+
+  /**
+   * @return a copy of the sketch, which changes independently of it
+   */
+  public QuantileSketch copy() {
+    QuantileSketch copy = new QuantileSketch(k);
+    copy.levels = new long[levels.length][];
+    for (int h = 0; h < levelCount; h++) {
+      copy.levels[h] = levels[h].clone();
+    }
+    copy.sizes = sizes.clone();
+    copy.levelCount = levelCount;
+    copy.count = count;
+    copy.min = min;
+    copy.max = max;
+    return copy;
+  }
+
+  /**
+   * @param value the value to add
+   */
+  public void update(long value) {
+    append(0, value);
+    count++;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+    sortedValues = null;
+    if (retained() >= capacity()) {
+      compress();
+    }
+  }
+
+  /**
+   * Adds the values of the given sketch to this one. The other sketch does
+   * not change.
+   *
+   * @param other a sketch with the same accuracy parameter
+   */
+  public void merge(QuantileSketch other) {
+    if (other == null || other.k != k) {
+      throw new IllegalArgumentException("Only sketches with the same accuracy parameter can be merged.");
+    }
+    if (other.count == 0) {
+      return;
+    }
+    if (other == this) {
+      // The levels are read while they grow
+      other = copy();
+    }
+    for (int h = 0; h < other.levelCount; h++) {
+      for (int i = 0; i < other.sizes[h]; i++) {
+        append(h, other.levels[h][i]);
+      }
+    }
+    count += other.count;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    sortedValues = null;
+    while (retained() >= capacity()) {
+      compress();
+    }
+  }
+
+  /**
+   * @return the number of values added, including merged ones
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * @return the smallest value, or 0 if the sketch is empty
+   */
+  public long getMin() {
+    return isEmpty() ? 0 : min;
+  }
+
+  /**
+   * @return the largest value, or 0 if the sketch is empty
+   */
+  public long getMax() {
+    return isEmpty() ? 0 : max;
+  }
+
+  /**
+   * @return the number of values the sketch holds, at most a few times k
+   */
+  public int getRetained() {
+    return retained();
+  }
+
+  /**
+   * Estimates the value of the given rank, for example 0.5 for the median
+   * or 0.99 for the 99th percentile.
+   *
+   * @param fraction the rank, between 0 and 1 (both inclusive)
+   * @return the estimated value, or 0 if the sketch is empty
+   */
+  public long getQuantile(double fraction) {
+    if (!(fraction >= 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("The rank must be between 0 and 1.");
+    }
+    if (isEmpty()) {
+      return 0;
+    }
+    if (fraction == 0) {
+      return min;
+    }
+    if (fraction == 1) {
+      return max;
+    }
+    sort();
+    // The first value whose cumulative weight reaches the rank
+    long rank = (long) Math.ceil(fraction * count);
+    int index = Arrays.binarySearch(cumulativeWeights, rank);
+    return sortedValues[(index >= 0) ? index : -index - 1];
+  }
+
+  /**
+   * Estimates the fraction of the values that are at most the given value.
+   *
+   * @param value a value
+   * @return the estimated rank, between 0 and 1, or 0 if the sketch is empty
+   */
+  public double getRank(long value) {
+    if (isEmpty()) {
+      return 0;
+    }
+    sort();
+    // The number of retained values that are at most the value
+    int low = 0;
+    int high = sortedValues.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (sortedValues[middle] <= value) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return (low == 0) ? 0 : (double) cumulativeWeights[low - 1] / count;
+  }
+
+  @Override
+  public String toString() {
+    return "QuantileSketch[k=" + k + ", count=" + count + ", retained=" + retained() + "]";
+  }
+
+  private void append(int level, long value) {
+    while (level >= levelCount) {
+      addLevel();
+    }
+    if (sizes[level] == levels[level].length) {
+      levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+    }
+    levels[level][sizes[level]++] = value;
+  }
+
+  private void addLevel() {
+    if (levelCount == levels.length) {
+      levels = Arrays.copyOf(levels, levelCount * 2);
+      sizes = Arrays.copyOf(sizes, levelCount * 2);
+    }
+    levels[levelCount] = new long[Math.max(2, capacity(levelCount + 1, levelCount + 1))];
+    sizes[levelCount] = 0;
+    levelCount++;
+  }
+
+  // Compacts the lowest level that is at its capacity
+  private void compress() {
+    for (int h = 0; h < levelCount; h++) {
+      if (sizes[h] >= capacity(h, levelCount)) {
+        compact(h);
+        return;
+      }
+    }
+  }
+
+  // Sorts the level and moves every other value up one level; with an odd
+  // number of values the smallest one stays
+  private void compact(int level) {
+    long[] values = levels[level];
+    int size = sizes[level];
+    Arrays.sort(values, 0, size);
+    int from = size & 1;
+    int offset = random.nextBoolean() ? 1 : 0;
+    // append may replace the array of the level above, not this one
+    for (int i = from + offset; i < size; i += 2) {
+      append(level + 1, values[i]);
+    }
+    sizes[level] = from;
+  }
+
+  private int retained() {
+    int retained = 0;
+    for (int h = 0; h < levelCount; h++) {
+      retained += sizes[h];
+    }
+    return retained;
+  }
+
+  private int capacity() {
+    int capacity = 0;
+    for (int h = 0; h < levelCount; h++) {
+      capacity += capacity(h, levelCount);
+    }
+    return capacity;
+  }
+
+  // The capacity of a level, k for the top level and 2/3 of that per level
+  // below it
+  private int capacity(int level, int levels) {
+    return Math.max(2, (int) Math.ceil(k * Math.pow(LEVEL_RATIO, levels - 1 - level)));
+  }
+
+  private void sort() {
+    if (sortedValues != null) {
+      return;
+    }
+    long[] values = new long[0];
+    long[] weights = new long[0];
+    for (int h = 0; h < levelCount; h++) {
+      long[] level = Arrays.copyOf(levels[h], sizes[h]);
+      Arrays.sort(level);
+      long[] mergedValues = new long[values.length + level.length];
+      long[] mergedWeights = new long[mergedValues.length];
+      int i = 0;
+      int j = 0;
+      for (int m = 0; m < mergedValues.length; m++) {
+        if (j == level.length || (i < values.length && values[i] <= level[j])) {
+          mergedValues[m] = values[i];
+          mergedWeights[m] = weights[i++];
+        } else {
+          mergedValues[m] = level[j++];
+          mergedWeights[m] = 1L << h;
+        }
+      }
+      values = mergedValues;
+      weights = mergedWeights;
+    }
+    for (int m = 1; m < weights.length; m++) {
+      weights[m] += weights[m - 1];
+    }
+    sortedValues = values;
+    cumulativeWeights = weights;
+  }
+}
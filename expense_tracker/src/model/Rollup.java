@@ -0,0 +1,75 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * The {@code Rollup} holds the count and total of the transactions of one
+ * period, such as a day, a week, a month or the last 30 days, for one
+ * category or for all of them.
+ * <p>
+ * A rollup is immutable and describes the model at the time it was read
+ * (see {@code ExpenseTrackerModel.getRollups}). The total is kept exactly, in
+ * cents.
+ */
+public final class Rollup {
+
+  private final String category;
+  private final LocalDate firstDay;
+  private final LocalDate lastDay;
+  private final int count;
+  private final long totalCents;
+
+  Rollup(String category, LocalDate firstDay, LocalDate lastDay, int count, long totalCents) {
+    this.category = category;
+    this.firstDay = firstDay;
+    this.lastDay = lastDay;
+    this.count = count;
+    this.totalCents = totalCents;
+  }
+
+  /**
+   * @return the category, or null for the rollup of all transactions
+   */
+  public String getCategory() {
+    return category;
+  }
+
+  /**
+   * @return the first day of the period
+   */
+  public LocalDate getFirstDay() {
+    return firstDay;
+  }
+
+  /**
+   * @return the last day of the period (inclusive)
+   */
+  public LocalDate getLastDay() {
+    return lastDay;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public long getTotalCents() {
+    return totalCents;
+  }
+
+  public double getTotal() {
+    return Money.toAmount(totalCents);
+  }
+
+  /**
+   * @return the mean amount, or 0 if the period has no transactions
+   */
+  public double getMean() {
+    return (count == 0) ? 0 : (double) totalCents / count / Money.CENTS_PER_UNIT;
+  }
+
+  @Override
+  public String toString() {
+    return (category == null ? "all" : category) + " " + firstDay + ".." + lastDay + ": count=" + count
+        + ", total=" + Money.format(totalCents);
+  }
+}
@@ -0,0 +1,66 @@
+package model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The calendar periods that the {@code ExpenseTrackerModel} keeps rollups
+ * for. Weeks start on Monday, as in ISO 8601.
+ * <p>
+ * Every period numbers its buckets with consecutive {@code long} keys, so the
+ * buckets between two dates can be looked up one by one without sorting.
+ */
+public enum RollupPeriod {
+  DAY, WEEK, MONTH;
+
+  // 1970-01-01, epoch day 0, was a Thursday
+  private static final int DAYS_FROM_MONDAY_TO_EPOCH = 3;
+
+  /**
+   * @param epochDay a day, as counted by {@code LocalDate.toEpochDay()}
+   * @return the key of the bucket that holds the day
+   */
+  long bucketOf(long epochDay) {
+    switch (this) {
+    case DAY:
+      return epochDay;
+    case WEEK:
+      return Math.floorDiv(epochDay + DAYS_FROM_MONDAY_TO_EPOCH, 7);
+    default:
+      LocalDate date = LocalDate.ofEpochDay(epochDay);
+      return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+  }
+
+  /**
+   * @param bucket the key of a bucket
+   * @return the first day of the bucket
+   */
+  LocalDate firstDayOf(long bucket) {
+    switch (this) {
+    case DAY:
+      return LocalDate.ofEpochDay(bucket);
+    case WEEK:
+      return LocalDate.ofEpochDay(bucket * 7 - DAYS_FROM_MONDAY_TO_EPOCH);
+    default:
+      return LocalDate.of((int) Math.floorDiv(bucket, 12), Math.floorMod(bucket, 12) + 1, 1);
+    }
+  }
+
+  /**
+   * @param bucket the key of a bucket
+   * @return the last day of the bucket (inclusive)
+   */
+  LocalDate lastDayOf(long bucket) {
+    LocalDate first = firstDayOf(bucket);
+    switch (this) {
+    case DAY:
+      return first;
+    case WEEK:
+      return first.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+    default:
+      return first.with(TemporalAdjusters.lastDayOfMonth());
+    }
+  }
+}
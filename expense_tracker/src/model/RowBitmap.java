@@ -0,0 +1,400 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The {@code RowBitmap} is an immutable, compressed set of row positions,
+ * used for the rows that match the filter.
+ * <p>
+ * It follows the Roaring bitmap layout: the rows are grouped by their upper
+ * 16 bits, and every group of 65536 rows is stored in the smallest of three
+ * containers:
+ * <ul>
+ * <li>an array container, a sorted {@code char[]} of the lower 16 bits, for
+ * sparse groups</li>
+ * <li>a bitmap container, 1024 {@code long} words, for dense groups</li>
+ * <li>a run container, sorted runs of consecutive rows, for groups made of a
+ * few long ranges</li>
+ * </ul>
+ * {@link #contains(int)} finds the group with a binary search over the few
+ * group keys and then tests one bit, or searches a container of at most 4096
+ * entries, so its cost does not grow with the number of rows.
+ */
+public final class RowBitmap {
+
+  public static final RowBitmap EMPTY = new RowBitmap(new char[0], new Container[0], 0);
+
+  private static final int ARRAY_LIMIT = 4096;
+
+  private final char[] keys;
+  private final Container[] containers;
+  private final int cardinality;
+
+  private RowBitmap(char[] keys, Container[] containers, int cardinality) {
+    this.keys = keys;
+    this.containers = containers;
+    this.cardinality = cardinality;
+  }
+
+  /**
+   * @param rows the rows, in strictly ascending order and not negative
+   * @param length the number of rows to take from the array
+   * @return the bitmap of the rows
+   */
+  public static RowBitmap fromSorted(int[] rows, int length) {
+    if (length == 0) {
+      return EMPTY;
+    }
+    if (rows[0] < 0) {
+      throw new IllegalArgumentException("The rows must not be negative.");
+    }
+    char[] keys = new char[(rows[length - 1] >>> 16) + 1];
+    Container[] containers = new Container[keys.length];
+    int count = 0;
+    int start = 0;
+    while (start < length) {
+      int key = rows[start] >>> 16;
+      int end = start + 1;
+      while (end < length && rows[end] >>> 16 == key) {
+        if (rows[end] <= rows[end - 1]) {
+          throw new IllegalArgumentException("The rows must be in strictly ascending order.");
+        }
+        end++;
+      }
+      if (end < length && rows[end] <= rows[end - 1]) {
+        throw new IllegalArgumentException("The rows must be in strictly ascending order.");
+      }
+      keys[count] = (char) key;
+      containers[count++] = Container.of(rows, start, end);
+      start = end;
+    }
+    return new RowBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), length);
+  }
+
+  /**
+   * @param rows the rows
+   * @return the bitmap of the set bits
+   */
+  public static RowBitmap fromBitSet(BitSet rows) {
+    return fromSorted(rows.stream().toArray(), rows.cardinality());
+  }
+
+  /**
+   * @param rows the rows, in any order, duplicates are ignored
+   * @return the bitmap of the rows
+   */
+  public static RowBitmap fromCollection(Collection<Integer> rows) {
+    int[] sorted = new int[rows.size()];
+    int length = 0;
+    for (Integer row : rows) {
+      if (row == null) {
+        throw new IllegalArgumentException("The rows must be non-null.");
+      }
+      sorted[length++] = row;
+    }
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < length; i++) {
+      if (distinct == 0 || sorted[distinct - 1] != sorted[i]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+    return fromSorted(sorted, distinct);
+  }
+
+  /**
+   * @param row a row position
+   * @return true if the row is in the set
+   */
+  public boolean contains(int row) {
+    if (row < 0) {
+      return false;
+    }
+    int index = Arrays.binarySearch(keys, (char) (row >>> 16));
+    return index >= 0 && containers[index].contains((char) row);
+  }
+
+  /**
+   * @return the number of rows in the set
+   */
+  public int cardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  /**
+   * @return the lowest row, or -1 if the set is empty
+   */
+  public int first() {
+    return isEmpty() ? -1 : (keys[0] << 16) | containers[0].first();
+  }
+
+  /**
+   * @return the highest row, or -1 if the set is empty
+   */
+  public int last() {
+    return isEmpty() ? -1 : (keys[keys.length - 1] << 16) | containers[containers.length - 1].last();
+  }
+
+  /**
+   * @return the rows, in ascending order
+   */
+  public int[] toArray() {
+    int[] rows = new int[cardinality];
+    int offset = 0;
+    for (int i = 0; i < keys.length; i++) {
+      offset = containers[i].copyTo(keys[i] << 16, rows, offset);
+    }
+    return rows;
+  }
+
+  /**
+   * @return a read-only list of the rows, in ascending order
+   */
+  public List<Integer> toList() {
+    int[] rows = toArray();
+    return new IntList(rows);
+  }
+
+  /**
+   * @return the number of bytes used by the containers, roughly
+   */
+  public long sizeInBytes() {
+    long bytes = keys.length * 2L;
+    for (Container container : containers) {
+      bytes += container.sizeInBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof RowBitmap)) {
+      return false;
+    }
+    RowBitmap that = (RowBitmap) other;
+    return cardinality == that.cardinality && Arrays.equals(toArray(), that.toArray());
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(toArray());
+  }
+
+  @Override
+  public String toString() {
+    return "RowBitmap" + toList();
+  }
+
+  private static final class IntList extends AbstractList<Integer> implements RandomAccess {
+    private final int[] values;
+
+    IntList(int[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public Integer get(int index) {
+      return values[index];
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+  }
+
+  // The lower 16 bits of the rows of one group
+  private abstract static class Container {
+
+    // Chooses the smallest container for rows[start..end) of one group
+    static Container of(int[] rows, int start, int end) {
+      int count = end - start;
+      int runs = 1;
+      for (int i = start + 1; i < end; i++) {
+        if (rows[i] != rows[i - 1] + 1) {
+          runs++;
+        }
+      }
+      long arrayBytes = 2L * count;
+      long runBytes = 4L * runs;
+      if (runBytes < arrayBytes && runBytes < BitmapContainer.BYTES) {
+        return new RunContainer(rows, start, end, runs);
+      }
+      if (count <= ARRAY_LIMIT) {
+        return new ArrayContainer(rows, start, end);
+      }
+      return new BitmapContainer(rows, start, end);
+    }
+
+    abstract boolean contains(char low);
+
+    abstract char first();
+
+    abstract char last();
+
+    // Copies the rows, with the given upper bits, and returns the new offset
+    abstract int copyTo(int high, int[] rows, int offset);
+
+    abstract long sizeInBytes();
+  }
+
+  private static final class ArrayContainer extends Container {
+    private final char[] values;
+
+    ArrayContainer(int[] rows, int start, int end) {
+      values = new char[end - start];
+      for (int i = start; i < end; i++) {
+        values[i - start] = (char) rows[i];
+      }
+    }
+
+    @Override
+    boolean contains(char low) {
+      return Arrays.binarySearch(values, low) >= 0;
+    }
+
+    @Override
+    char first() {
+      return values[0];
+    }
+
+    @Override
+    char last() {
+      return values[values.length - 1];
+    }
+
+    @Override
+    int copyTo(int high, int[] rows, int offset) {
+      for (char value : values) {
+        rows[offset++] = high | value;
+      }
+      return offset;
+    }
+
+    @Override
+    long sizeInBytes() {
+      return 2L * values.length;
+    }
+  }
+
+  private static final class BitmapContainer extends Container {
+    static final int BYTES = 8192;
+    private final long[] words = new long[1024];
+
+    BitmapContainer(int[] rows, int start, int end) {
+      for (int i = start; i < end; i++) {
+        char low = (char) rows[i];
+        words[low >>> 6] |= 1L << low;
+      }
+    }
+
+    @Override
+    boolean contains(char low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    char first() {
+      int i = 0;
+      while (words[i] == 0) {
+        i++;
+      }
+      return (char) ((i << 6) + Long.numberOfTrailingZeros(words[i]));
+    }
+
+    @Override
+    char last() {
+      int i = words.length - 1;
+      while (words[i] == 0) {
+        i--;
+      }
+      return (char) ((i << 6) + 63 - Long.numberOfLeadingZeros(words[i]));
+    }
+
+    @Override
+    int copyTo(int high, int[] rows, int offset) {
+      for (int i = 0; i < words.length; i++) {
+        long word = words[i];
+        while (word != 0) {
+          rows[offset++] = high | ((i << 6) + Long.numberOfTrailingZeros(word));
+          // Clear the lowest set bit
+          word &= word - 1;
+        }
+      }
+      return offset;
+    }
+
+    @Override
+    long sizeInBytes() {
+      return BYTES;
+    }
+  }
+
+  private static final class RunContainer extends Container {
+    // Run i covers starts[i] to ends[i], both inclusive
+    private final char[] starts;
+    private final char[] ends;
+
+    RunContainer(int[] rows, int start, int end, int runs) {
+      starts = new char[runs];
+      ends = new char[runs];
+      int run = 0;
+      starts[0] = (char) rows[start];
+      for (int i = start + 1; i < end; i++) {
+        if (rows[i] != rows[i - 1] + 1) {
+          ends[run++] = (char) rows[i - 1];
+          starts[run] = (char) rows[i];
+        }
+      }
+      ends[run] = (char) rows[end - 1];
+    }
+
+    @Override
+    boolean contains(char low) {
+      int index = Arrays.binarySearch(starts, low);
+      if (index >= 0) {
+        return true;
+      }
+      // The run that starts before the row
+      int run = -index - 2;
+      return run >= 0 && low <= ends[run];
+    }
+
+    @Override
+    char first() {
+      return starts[0];
+    }
+
+    @Override
+    char last() {
+      return ends[ends.length - 1];
+    }
+
+    @Override
+    int copyTo(int high, int[] rows, int offset) {
+      for (int run = 0; run < starts.length; run++) {
+        for (int low = starts[run]; low <= ends[run]; low++) {
+          rows[offset++] = high | low;
+        }
+      }
+      return offset;
+    }
+
+    @Override
+    long sizeInBytes() {
+      return 4L * starts.length;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package model;
+
+/**
+ * The {@code ScalarAmountKernel} runs the {@code AmountKernel} loops one
+ * amount at a time. The comparison does not branch, so the JIT can still
+ * unroll it.
+ */
+final class ScalarAmountKernel implements AmountKernel {
+
+  @Override
+  public long sum(long[] amounts, int length) {
+    long total = 0;
+    for (int i = 0; i < length; i++) {
+      total += amounts[i];
+    }
+    return total;
+  }
+
+  @Override
+  public void matchBetween(long[] amounts, int length, long minCents, long maxCents, long[] mask) {
+    for (int word = 0; word < (length + 63) >>> 6; word++) {
+      long bits = 0;
+      int end = Math.min(length, (word + 1) << 6);
+      for (int i = word << 6; i < end; i++) {
+        long amount = amounts[i];
+        bits |= (amount >= minCents & amount <= maxCents ? 1L : 0L) << i;
+      }
+      mask[word] = bits;
+    }
+  }
+}
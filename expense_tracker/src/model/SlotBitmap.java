@@ -0,0 +1,150 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code SlotBitmap} is a set of slots (see {@code TransactionIndex}) that
+ * the model uses to keep the matches of the active filter up to date.
+ * <p>
+ * Like the {@code TransactionStore}, it is made of blocks of one chunk of
+ * slots each, and it is copied on write: {@link #copy()} hands out a copy in
+ * O(1) by sharing the blocks, and a later change copies only
+ * the one block it touches. So setting or clearing a slot stays O(1) even if
+ * every change is announced with a copy.
+ */
+final class SlotBitmap {
+
+  private static final int BLOCK_WORDS = TransactionStore.CHUNK_SIZE >>> 6;
+
+  private long[][] blocks;
+  // The owner of every block; a block with another owner is shared
+  private Object[] owners;
+  private Object owner = new Object();
+  private boolean directoryShared;
+  private int cardinality;
+
+  SlotBitmap() {
+    blocks = new long[4][];
+    owners = new Object[4];
+  }
+
+  private SlotBitmap(long[][] blocks, int cardinality) {
+    this.blocks = blocks;
+    this.owners = new Object[blocks.length];
+    this.cardinality = cardinality;
+    // The blocks belong to the original, so the copy owns none of them
+    this.directoryShared = true;
+  }
+
+  boolean get(int slot) {
+    int block = slot >>> TransactionStore.CHUNK_SHIFT;
+    if (block >= blocks.length || blocks[block] == null) {
+      return false;
+    }
+    return (blocks[block][(slot & TransactionStore.CHUNK_MASK) >>> 6] & (1L << slot)) != 0;
+  }
+
+  /**
+   * @return true if the slot was not in the set yet
+   */
+  boolean set(int slot) {
+    if (get(slot)) {
+      return false;
+    }
+    long[] words = writableBlock(slot >>> TransactionStore.CHUNK_SHIFT);
+    words[(slot & TransactionStore.CHUNK_MASK) >>> 6] |= 1L << slot;
+    cardinality++;
+    return true;
+  }
+
+  /**
+   * @return true if the slot was in the set
+   */
+  boolean clear(int slot) {
+    if (!get(slot)) {
+      return false;
+    }
+    long[] words = writableBlock(slot >>> TransactionStore.CHUNK_SHIFT);
+    words[(slot & TransactionStore.CHUNK_MASK) >>> 6] &= ~(1L << slot);
+    cardinality--;
+    return true;
+  }
+
+  int cardinality() {
+    return cardinality;
+  }
+
+  boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  /**
+   * @return a copy of the current set, in O(1): both share the blocks until
+   *         one of them changes a block
+   */
+  SlotBitmap copy() {
+    SlotBitmap copy = new SlotBitmap(blocks, cardinality);
+    // Every block is shared from now on
+    owner = new Object();
+    directoryShared = true;
+    return copy;
+  }
+
+  /**
+   * Converts the slots to the positions they have in the given snapshot,
+   * which must hold every slot of the set.
+   *
+   * @param transactions the snapshot
+   * @return the positions of the slots
+   */
+  RowBitmap toRows(TransactionSnapshot transactions) {
+    int[] slots = new int[cardinality];
+    int count = 0;
+    for (int block = 0; block < blocks.length; block++) {
+      long[] words = blocks[block];
+      if (words == null) {
+        continue;
+      }
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        long word = words[i];
+        while (word != 0) {
+          slots[count++] = (block << TransactionStore.CHUNK_SHIFT) + (i << 6) + Long.numberOfTrailingZeros(word);
+          // Clear the lowest set bit
+          word &= word - 1;
+        }
+      }
+    }
+    int[] positions = transactions.positionsOfSlots(slots, count);
+    return RowBitmap.fromSorted(positions, count);
+  }
+
+  /**
+   * @param rows positions in the given snapshot
+   * @param transactions the snapshot
+   * @return the set of the slots of the rows
+   */
+  static SlotBitmap fromRows(RowBitmap rows, TransactionSnapshot transactions) {
+    SlotBitmap slots = new SlotBitmap();
+    for (int row : rows.toArray()) {
+      slots.set(transactions.slotAt(row));
+    }
+    return slots;
+  }
+
+  private long[] writableBlock(int block) {
+    if (directoryShared || block >= blocks.length) {
+      int length = Math.max(blocks.length, Integer.highestOneBit(block) * 2);
+      blocks = Arrays.copyOf(blocks, length);
+      owners = Arrays.copyOf(owners, length);
+      directoryShared = false;
+    }
+    if (blocks[block] == null) {
+      blocks[block] = new long[BLOCK_WORDS];
+      owners[block] = owner;
+    } else if (owners[block] != owner) {
+      blocks[block] = blocks[block].clone();
+      owners[block] = owner;
+    }
+    return blocks[block];
+  }
+}
@@ -0,0 +1,254 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import model.Filter.AmountIndex;
+import model.Filter.FilterPlan;
+import model.Filter.FilterPlanner;
+import model.Filter.IncrementalFilter;
+import model.Filter.TransactionFilter;
+
+/**
+ * The {@code TopKQuery} finds the positions of the k largest amounts that
+ * match a filter, for {@code ExpenseTrackerModel.topK}. Larger amounts come
+ * first, and of equal amounts the later transaction comes first.
+ * <p>
+ * For the current snapshot, {@link #fromIndex} chooses from the estimate of
+ * the {@code FilterPlanner}: while many transactions match, the amount index
+ * is walked from the largest amount down until k of them matched; while few
+ * match and an index finds them, only their amounts go through a heap.
+ * Otherwise the amount column is scanned through a bounded min-heap of
+ * primitive (amount, position) pairs, O(n log k), either in one pass or
+ * split into parts on a {@code ForkJoinPool} whose heaps are merged.
+ */
+final class TopKQuery {
+
+  // The smallest part a thread scans on its own
+  private static final int MIN_PART_SIZE = 1 << 12;
+  // The index walk loads every slot it visits at random, which costs about
+  // as much as reading a few rows in order
+  private static final double WALK_COST = 4;
+
+  private TopKQuery() {
+  }
+
+  /**
+   * Answers from the indexes when that is cheaper than a scan. The walk of
+   * the amount index visits about k * n / m slots for m matches, so it only
+   * pays off while m is large; for few matches, the plan of the filter finds
+   * them and only their amounts go through the heap.
+   *
+   * @return the positions, or null if a scan of the amounts is cheaper or
+   *         the snapshot has no indexes
+   */
+  static int[] fromIndex(int k, TransactionFilter filter, TransactionSnapshot transactions) {
+    AmountIndex index = transactions.getIndex(AmountIndex.class);
+    if (index == null) {
+      return null;
+    }
+    if (filter == null) {
+      return walkIndex(k, null, index, transactions);
+    }
+    int size = transactions.size();
+    FilterPlan plan = FilterPlanner.plan(filter, transactions);
+    double rows = plan.getEstimatedRows();
+    double walkCost = (rows <= 0 || !(filter instanceof IncrementalFilter)) ? Double.POSITIVE_INFINITY
+        : k * (size / rows) * WALK_COST;
+    double planCost = plan.getEstimatedCost() + rows;
+    if (walkCost < Math.min(planCost, size)) {
+      return walkIndex(k, (IncrementalFilter) filter, index, transactions);
+    }
+    if (planCost < size) {
+      return fromPositions(k, plan.execute(), transactions);
+    }
+    return null;
+  }
+
+  private static int[] walkIndex(int k, IncrementalFilter test, AmountIndex index,
+      TransactionSnapshot transactions) {
+    int[] slots = index.largestSlots(k, slot -> test == null || test.matches(transactions.transactionAtSlot(slot)));
+    // Rank the slots in ascending order, then put the positions back in the
+    // order of the amounts
+    int[] sorted = slots.clone();
+    Arrays.sort(sorted);
+    int[] sortedPositions = transactions.positionsOfSlots(sorted, sorted.length);
+    int[] positions = new int[slots.length];
+    for (int i = 0; i < slots.length; i++) {
+      positions[i] = sortedPositions[Arrays.binarySearch(sorted, slots[i])];
+    }
+    return positions;
+  }
+
+  // Offers the amounts of the given positions only
+  private static int[] fromPositions(int k, BitSet positions, TransactionSnapshot transactions) {
+    Heap heap = new Heap(k);
+    for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+      heap.offer(transactions.amountCentsAt(position), position);
+    }
+    return heap.toPositions();
+  }
+
+  static int[] scan(int k, TransactionFilter filter, TransactionSnapshot transactions) {
+    Heap heap = new Heap(k);
+    scanInto(heap, transactions.cursor(), filter, matchesOf(filter, transactions));
+    return heap.toPositions();
+  }
+
+  static int[] scanParallel(int k, TransactionFilter filter, TransactionSnapshot transactions, ForkJoinPool pool) {
+    int partSize = Math.max(MIN_PART_SIZE, transactions.size() / (pool.getParallelism() * 4));
+    BitSet matches = matchesOf(filter, transactions);
+    return pool.invoke(new ScanPart(k, filter, matches, transactions.spliterator(), partSize)).toPositions();
+  }
+
+  // The positions of a filter that cannot test one transaction on its own,
+  // or null
+  private static BitSet matchesOf(TransactionFilter filter, TransactionSnapshot transactions) {
+    return (filter == null || filter instanceof IncrementalFilter) ? null : filter.matchingPositions(transactions);
+  }
+
+  private static void scanInto(Heap heap, TransactionSnapshot.Cursor cursor, TransactionFilter filter,
+      BitSet matches) {
+    while (cursor.next()) {
+      long amount = cursor.amountCents();
+      int position = cursor.position();
+      // Test the filter only for an amount that would enter the heap
+      if (!heap.wouldAccept(amount, position)) {
+        continue;
+      }
+      if (matches != null ? matches.get(position)
+          : filter == null || ((IncrementalFilter) filter).matchesRow(cursor)) {
+        heap.offer(amount, position);
+      }
+    }
+  }
+
+  // Scans one range of positions into its own heap, after forking off the
+  // first halves of it while it is too large, and merges the heaps
+  private static final class ScanPart extends RecursiveTask<Heap> {
+    private static final long serialVersionUID = 1L;
+
+    private final int k;
+    private final TransactionFilter filter;
+    private final BitSet matches;
+    private final TransactionSnapshot.RangeSpliterator range;
+    private final int partSize;
+
+    ScanPart(int k, TransactionFilter filter, BitSet matches, TransactionSnapshot.RangeSpliterator range,
+        int partSize) {
+      this.k = k;
+      this.filter = filter;
+      this.matches = matches;
+      this.range = range;
+      this.partSize = partSize;
+    }
+
+    @Override
+    protected Heap compute() {
+      List<ScanPart> forked = new ArrayList<ScanPart>();
+      for (TransactionSnapshot.RangeSpliterator prefix : range.splitDown(partSize)) {
+        ScanPart part = new ScanPart(k, filter, matches, prefix, partSize);
+        part.fork();
+        forked.add(part);
+      }
+      Heap heap = new Heap(k);
+      scanInto(heap, range.cursor(), filter, matches);
+      for (ScanPart part : forked) {
+        heap.merge(part.join());
+      }
+      return heap;
+    }
+  }
+
+  /**
+   * A min-heap of at most k (amount, position) pairs in two primitive
+   * arrays; the root is the smallest pair, which the next larger one
+   * replaces.
+   */
+  static final class Heap {
+    private final long[] amounts;
+    private final int[] positions;
+    private int size;
+
+    Heap(int k) {
+      amounts = new long[k];
+      positions = new int[k];
+    }
+
+    boolean wouldAccept(long amount, int position) {
+      return size < amounts.length || (amounts.length > 0 && greater(amount, position, 0));
+    }
+
+    void offer(long amount, int position) {
+      if (size < amounts.length) {
+        int i = size++;
+        // Sift up
+        while (i > 0 && greater(amounts[(i - 1) >>> 1], positions[(i - 1) >>> 1], amount, position)) {
+          int parent = (i - 1) >>> 1;
+          amounts[i] = amounts[parent];
+          positions[i] = positions[parent];
+          i = parent;
+        }
+        amounts[i] = amount;
+        positions[i] = position;
+      } else if (wouldAccept(amount, position)) {
+        siftDown(amount, position);
+      }
+    }
+
+    void merge(Heap other) {
+      for (int i = 0; i < other.size; i++) {
+        offer(other.amounts[i], other.positions[i]);
+      }
+    }
+
+    /**
+     * @return the positions, largest amount first; empties the heap
+     */
+    int[] toPositions() {
+      int[] sorted = new int[size];
+      for (int i = size - 1; i >= 0; i--) {
+        sorted[i] = positions[0];
+        size--;
+        if (size > 0) {
+          siftDown(amounts[size], positions[size]);
+        }
+      }
+      return sorted;
+    }
+
+    // Puts the pair at the root and moves it down to its place
+    private void siftDown(long amount, int position) {
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && greater(amounts[child], positions[child], amounts[child + 1], positions[child + 1])) {
+          child++;
+        }
+        if (!greater(amount, position, amounts[child], positions[child])) {
+          break;
+        }
+        amounts[i] = amounts[child];
+        positions[i] = positions[child];
+        i = child;
+      }
+      amounts[i] = amount;
+      positions[i] = position;
+    }
+
+    private boolean greater(long amount, int position, int index) {
+      return greater(amount, position, amounts[index], positions[index]);
+    }
+
+    private static boolean greater(long amount, int position, long otherAmount, int otherPosition) {
+      return amount > otherAmount || (amount == otherAmount && position > otherPosition);
+    }
+  }
+}
@@ -3,19 +3,48 @@ package model;
 import controller.InputValidation;
 
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Transaction {
 
+  // Kept for callers that parse timestamps. SimpleDateFormat is not
+  // thread-safe, so the timestamps are formatted with timestampFormatter.
   public static final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+
+  // DateTimeFormatter is immutable and thread-safe
+  private static final DateTimeFormatter timestampFormatter =
+      DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm").withZone(ZoneId.systemDefault());
+
+  // The last formatted minute. Transactions are usually created close together,
+  // so most of them reuse this string instead of formatting a new one.
+  private static volatile FormattedMinute lastFormattedMinute = new FormattedMinute(Long.MIN_VALUE, null);
     
+  // Source of the transaction ids, which only ever increase
+  private static final AtomicLong nextId = new AtomicLong(1);
+
   //final means that the variable cannot be changed
-  private final double amount;
+  private final long id;
+  // fixed-point amount, see Money
+  private final long amountCents;
   private final String category;
-  private final String timestamp;
+  // epoch milliseconds, formatted only when getTimestamp() is called
+  private final long timestamp;
 
   public Transaction(double amount, String category) {
+    this(amount, category, System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a transaction with its own timestamp, for example an imported one.
+   *
+   * @param amount the amount
+   * @param category the category
+   * @param timestampMillis the timestamp, in epoch milliseconds
+   */
+  public Transaction(double amount, String category, long timestampMillis) {
     // Since this is a public constructor, perform input validation
     // to guarantee that the amount and category are both valid
     if (InputValidation.isValidAmount(amount) == false) {
@@ -24,14 +53,38 @@ public class Transaction {
     if (InputValidation.isValidCategory(category) == false) {
 	throw new IllegalArgumentException("The category is not valid.");
     }
+    if (timestampMillis < 0) {
+	throw new IllegalArgumentException("The timestamp is not valid.");
+    }
       
-    this.amount = amount;
+    this.amountCents = Money.toCents(amount);
+    if (this.amountCents == 0) {
+      // The amount rounds to zero cents
+      throw new IllegalArgumentException("The amount is not valid.");
+    }
+    // Only a valid transaction takes an id
+    this.id = nextId.getAndIncrement();
     this.category = category;
-    this.timestamp = generateTimestamp();
+    this.timestamp = timestampMillis;
+  }
+
+  /**
+   * @return the id of the transaction, unique and increasing in creation order
+   */
+  public long getId() {
+    return id;
   }
 
   public double getAmount() {
-    return amount;
+    // Kept for the callers that work with double amounts
+    return Money.toAmount(amountCents);
+  }
+
+  /**
+   * @return the amount in cents
+   */
+  public long getAmountCents() {
+    return amountCents;
   }
 
   //setter method is removed because we want to make the Transaction immutable
@@ -48,11 +101,42 @@ public class Transaction {
   // }
   
   public String getTimestamp() {
+    return formatTimestamp(timestamp);
+  }
+
+  /**
+   * @return the creation time of the transaction in epoch milliseconds
+   */
+  public long getTimestampMillis() {
     return timestamp;
   }
-  //private helper method to generate timestamp
-  private String generateTimestamp() {
-     return dateFormatter.format(new Date());
+
+  /**
+   * Formats an epoch milliseconds timestamp the same way as
+   * {@code getTimestamp()}. Safe to call from any thread.
+   *
+   * @param timestampMillis the timestamp in epoch milliseconds
+   * @return the formatted timestamp, with minute precision
+   */
+  public static String formatTimestamp(long timestampMillis) {
+    long minute = Math.floorDiv(timestampMillis, 60000L);
+    FormattedMinute cached = lastFormattedMinute;
+    if (cached.minute != minute) {
+      cached = new FormattedMinute(minute, timestampFormatter.format(Instant.ofEpochMilli(timestampMillis)));
+      lastFormattedMinute = cached;
+    }
+    return cached.text;
+  }
+
+  // Immutable pair, so that it can be published through a volatile field
+  private static final class FormattedMinute {
+    final long minute;
+    final String text;
+
+    FormattedMinute(long minute, String text) {
+      this.minute = minute;
+      this.text = text;
+    }
   }
 
 }
@@ -0,0 +1,133 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code TransactionAggregates} keep the running aggregates of the
+ * transactions of a model up to date on every add and remove, so that the
+ * {@code TransactionSummary} never needs a scan of the transactions.
+ * <p>
+ * Counts and sums are plain {@code long} cents, so they are exact. For the
+ * minimum and maximum every category keeps a count per distinct amount, which
+ * finds the next minimum or maximum without a scan when the current one is
+ * removed. The summary is built on demand, in O(number of categories), and
+ * cached until the next change. The store keeps the aggregates up to date as
+ * one of its indexes.
+ */
+class TransactionAggregates implements TransactionIndex {
+
+  private final Category[] categories = new Category[CategoryDictionary.MAX_CATEGORIES];
+  // The highest category ordinal seen, plus one
+  private int categoryLimit;
+  private TransactionSummary summary = TransactionSummary.EMPTY;
+
+  // The aggregates of one category. Removing the only transaction with the
+  // minimum or maximum amount must reveal the next one, so the amounts are an
+  // ordered multiset: the distinct amounts in cents, sorted, with the number
+  // of transactions of each. Repeated amounts only change a count; a new
+  // distinct amount shifts the arrays, and there are at most 100000 of them.
+  private static final class Category {
+    int count;
+    long totalCents;
+    long[] amounts = new long[8];
+    int[] amountCounts = new int[8];
+    int distinct;
+
+    void add(long cents) {
+      count++;
+      totalCents += cents;
+      int index = Arrays.binarySearch(amounts, 0, distinct, cents);
+      if (index >= 0) {
+        amountCounts[index]++;
+        return;
+      }
+      index = -index - 1;
+      if (distinct == amounts.length) {
+        amounts = Arrays.copyOf(amounts, distinct * 2);
+        amountCounts = Arrays.copyOf(amountCounts, distinct * 2);
+      }
+      System.arraycopy(amounts, index, amounts, index + 1, distinct - index);
+      System.arraycopy(amountCounts, index, amountCounts, index + 1, distinct - index);
+      amounts[index] = cents;
+      amountCounts[index] = 1;
+      distinct++;
+    }
+
+    void remove(long cents) {
+      count--;
+      totalCents -= cents;
+      int index = Arrays.binarySearch(amounts, 0, distinct, cents);
+      if (--amountCounts[index] == 0) {
+        distinct--;
+        System.arraycopy(amounts, index + 1, amounts, index, distinct - index);
+        System.arraycopy(amountCounts, index + 1, amountCounts, index, distinct - index);
+      }
+    }
+  }
+
+  @Override
+  public void added(int slot, Transaction t) {
+    int ordinal = CategoryDictionary.intern(t.getCategory());
+    if (categories[ordinal] == null) {
+      categories[ordinal] = new Category();
+    }
+    categories[ordinal].add(t.getAmountCents());
+    categoryLimit = Math.max(categoryLimit, ordinal + 1);
+    summary = null;
+  }
+
+  @Override
+  public void removed(int slot, Transaction t) {
+    int ordinal = CategoryDictionary.intern(t.getCategory());
+    categories[ordinal].remove(t.getAmountCents());
+    summary = null;
+  }
+
+  @Override
+  public void reset(TransactionSnapshot transactions) {
+    for (int ordinal = 0; ordinal < categoryLimit; ordinal++) {
+      categories[ordinal] = null;
+    }
+    TransactionSnapshot.Cursor cursor = transactions.cursor();
+    while (cursor.next()) {
+      added(cursor.slot(), cursor.transaction());
+    }
+    summary = null;
+  }
+
+  /**
+   * @return the summary of the current aggregates
+   */
+  TransactionSummary summary() {
+    if (summary == null) {
+      summary = buildSummary();
+    }
+    return summary;
+  }
+
+  private TransactionSummary buildSummary() {
+    TransactionSummary.Aggregate[] aggregates = new TransactionSummary.Aggregate[categoryLimit];
+    int count = 0;
+    long total = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int ordinal = 0; ordinal < categoryLimit; ordinal++) {
+      Category category = categories[ordinal];
+      if (category == null || category.count == 0) {
+        continue;
+      }
+      long categoryMin = category.amounts[0];
+      long categoryMax = category.amounts[category.distinct - 1];
+      aggregates[ordinal] = new TransactionSummary.Aggregate(CategoryDictionary.nameOf(ordinal), category.count,
+          category.totalCents, categoryMin, categoryMax);
+      count += category.count;
+      total += category.totalCents;
+      min = Math.min(min, categoryMin);
+      max = Math.max(max, categoryMax);
+    }
+    if (count == 0) {
+      return TransactionSummary.EMPTY;
+    }
+    return new TransactionSummary(new TransactionSummary.Aggregate(null, count, total, min, max), aggregates);
+  }
+}
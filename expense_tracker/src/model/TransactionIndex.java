@@ -0,0 +1,46 @@
+package model;
+
+/**
+ * A {@code TransactionIndex} is a secondary structure over the transactions
+ * of a {@code TransactionStore}, such as an index by category or amount, that
+ * the store keeps up to date on every change.
+ * <p>
+ * The index sees the rows by slot: the storage key of a row in the store.
+ * Slots grow in the order the rows were added and do not change when other
+ * rows are removed, so an index can keep them instead of positions, which
+ * shift on every removal. The store renumbers the slots only when it is
+ * compacted or rolled back, and then calls {@link #reset} with all rows. A
+ * current snapshot turns slots back into positions with
+ * {@code TransactionSnapshot.positionsOfSlots}.
+ * <p>
+ * Filters find an index with {@code TransactionSnapshot.getIndex}, which only
+ * returns it while the snapshot is the current state of the store.
+ */
+public interface TransactionIndex {
+
+  /**
+   * Called after a transaction was added.
+   *
+   * @param slot the slot of the transaction, greater than every earlier slot
+   * @param t the added transaction
+   */
+  void added(int slot, Transaction t);
+
+  /**
+   * Called after a transaction was removed. The slot is not used again until
+   * the next {@link #reset}.
+   *
+   * @param slot the slot the transaction had
+   * @param t the removed transaction
+   */
+  void removed(int slot, Transaction t);
+
+  /**
+   * Called after the slots were renumbered. The index must forget everything
+   * and rebuild itself from the given transactions, for example with
+   * {@code TransactionSnapshot.Cursor.slot()}.
+   *
+   * @param transactions all transactions of the store
+   */
+  void reset(TransactionSnapshot transactions);
+}
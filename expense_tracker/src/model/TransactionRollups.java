@@ -0,0 +1,155 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The {@code TransactionRollups} keep the count and total of the transactions
+ * of every day, week and month, per category and for all categories, up to
+ * date on every add and remove, so that reports and dashboards never need a
+ * scan of the transactions.
+ * <p>
+ * Every period keeps a hash map from bucket key (see {@code RollupPeriod}) to
+ * a mutable bucket, per category, so an add or a remove updates six buckets
+ * in O(1) expected time. Empty buckets are dropped. A query for the buckets
+ * between two dates looks up every bucket key in between, and a trailing
+ * window of d days adds up d day buckets, so neither depends on the number
+ * of transactions. The days are those of the time zone the rollups were
+ * created in, which is the one the timestamps are shown in.
+ */
+class TransactionRollups implements TransactionIndex {
+
+  private static final RollupPeriod[] PERIODS = RollupPeriod.values();
+  // The row of every category together, after the category ordinals
+  private static final int ALL = CategoryDictionary.MAX_CATEGORIES;
+
+  private final ZoneId zone;
+  // [period][category ordinal or ALL], null for a row without buckets
+  private final Row[][] rows = new Row[PERIODS.length][ALL + 1];
+
+  private static final class Bucket {
+    int count;
+    long totalCents;
+  }
+
+  // The buckets of one period and category, by bucket key
+  private static final class Row {
+    final HashMap<Long, Bucket> buckets = new HashMap<Long, Bucket>();
+  }
+
+  TransactionRollups() {
+    this(ZoneId.systemDefault());
+  }
+
+  TransactionRollups(ZoneId zone) {
+    this.zone = zone;
+  }
+
+  @Override
+  public void added(int slot, Transaction t) {
+    update(t, 1);
+  }
+
+  @Override
+  public void removed(int slot, Transaction t) {
+    update(t, -1);
+  }
+
+  @Override
+  public void reset(TransactionSnapshot transactions) {
+    for (Row[] period : rows) {
+      for (int row = 0; row < period.length; row++) {
+        period[row] = null;
+      }
+    }
+    TransactionSnapshot.Cursor cursor = transactions.cursor();
+    while (cursor.next()) {
+      added(cursor.slot(), cursor.transaction());
+    }
+  }
+
+  /**
+   * @param period the period of the buckets
+   * @param category the category, in any case, or null for all categories
+   * @param from the first day to report
+   * @param to the last day to report (inclusive)
+   * @return one rollup per bucket from the one that holds {@code from} to the
+   *         one that holds {@code to}, including the empty ones
+   */
+  List<Rollup> rollups(RollupPeriod period, String category, LocalDate from, LocalDate to) {
+    long first = period.bucketOf(from.toEpochDay());
+    long last = period.bucketOf(to.toEpochDay());
+    HashMap<Long, Bucket> row = row(period, category);
+    List<Rollup> rollups = new ArrayList<Rollup>((int) Math.max(0, Math.min(last - first + 1, Integer.MAX_VALUE)));
+    for (long key = first; key <= last; key++) {
+      Bucket bucket = (row == null) ? null : row.get(key);
+      rollups.add(new Rollup(category, period.firstDayOf(key), period.lastDayOf(key),
+          (bucket == null) ? 0 : bucket.count, (bucket == null) ? 0 : bucket.totalCents));
+    }
+    return rollups;
+  }
+
+  /**
+   * @param category the category, in any case, or null for all categories
+   * @param lastDay the last day of the window (inclusive)
+   * @param days the length of the window, in days
+   * @return the rollup of the days from {@code lastDay - days + 1} to
+   *         {@code lastDay}
+   */
+  Rollup window(String category, LocalDate lastDay, int days) {
+    HashMap<Long, Bucket> row = row(RollupPeriod.DAY, category);
+    long last = lastDay.toEpochDay();
+    int count = 0;
+    long totalCents = 0;
+    for (long day = last - days + 1; row != null && day <= last; day++) {
+      Bucket bucket = row.get(day);
+      if (bucket != null) {
+        count += bucket.count;
+        totalCents += bucket.totalCents;
+      }
+    }
+    return new Rollup(category, lastDay.minusDays(days - 1), lastDay, count, totalCents);
+  }
+
+  // The buckets of the category, or null if it has none
+  private HashMap<Long, Bucket> row(RollupPeriod period, String category) {
+    int ordinal = (category == null) ? ALL : CategoryDictionary.ordinalOf(category);
+    if (ordinal == CategoryDictionary.UNKNOWN || rows[period.ordinal()][ordinal] == null) {
+      return null;
+    }
+    return rows[period.ordinal()][ordinal].buckets;
+  }
+
+  private void update(Transaction t, int sign) {
+    int ordinal = CategoryDictionary.intern(t.getCategory());
+    long cents = sign * t.getAmountCents();
+    long epochDay = epochDayOf(t.getTimestampMillis());
+    for (RollupPeriod period : PERIODS) {
+      long key = period.bucketOf(epochDay);
+      update(period, ordinal, key, sign, cents);
+      update(period, ALL, key, sign, cents);
+    }
+  }
+
+  private void update(RollupPeriod period, int row, long key, int sign, long cents) {
+    if (rows[period.ordinal()][row] == null) {
+      rows[period.ordinal()][row] = new Row();
+    }
+    HashMap<Long, Bucket> rowBuckets = rows[period.ordinal()][row].buckets;
+    Bucket bucket = rowBuckets.computeIfAbsent(key, k -> new Bucket());
+    bucket.count += sign;
+    bucket.totalCents += cents;
+    if (bucket.count == 0) {
+      rowBuckets.remove(key);
+    }
+  }
+
+  private long epochDayOf(long timestampMillis) {
+    int offsetSeconds = zone.getRules().getOffset(Instant.ofEpochMilli(timestampMillis)).getTotalSeconds();
+    return Math.floorDiv(timestampMillis + offsetSeconds * 1000L, 86400000L);
+  }
+}
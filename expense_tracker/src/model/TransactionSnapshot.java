@@ -0,0 +1,506 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import model.TransactionStore.Chunk;
+
+/**
+ * The {@code TransactionSnapshot} is the read-only list of transactions that
+ * the {@code ExpenseTrackerModel} hands out.
+ * <p>
+ * Besides the usual {@code List} methods it gives access to the primitive
+ * columns of the {@code TransactionStore}, so that the filters and the totals
+ * can scan the amounts, timestamps and categories without touching the
+ * {@code Transaction} objects. Scans should use a {@link Cursor}, which walks
+ * the live slots chunk by chunk instead of looking up every position.
+ * <p>
+ * A snapshot is immutable. It shares its chunks with the store, so taking one
+ * is O(1), and it keeps showing the same transactions while the model
+ * changes. {@code size()} is O(1), and {@code subList} and
+ * {@link #cursor(int, int)} give views of a range of positions without copying
+ * anything. {@link #spliterator()} splits the positions in halves, so that a
+ * parallel scan can hand every half to another thread.
+ */
+public class TransactionSnapshot extends AbstractList<Transaction> implements RandomAccess {
+
+  private final TransactionStore store;
+  // Package-private, so that the store can return to this snapshot
+  final Chunk[] chunks;
+  final int[] liveBefore;
+  final int slotCount;
+  private final int size;
+  private final long version;
+
+  TransactionSnapshot(TransactionStore store, Chunk[] chunks, int[] liveBefore, int slotCount, int size,
+      long version) {
+    this.store = store;
+    this.chunks = chunks;
+    this.liveBefore = liveBefore;
+    this.slotCount = slotCount;
+    this.size = size;
+    this.version = version;
+  }
+
+  @Override
+  public Transaction get(int position) {
+    int slot = slotOf(position);
+    return chunks[slot >>> TransactionStore.CHUNK_SHIFT].rows[slot & TransactionStore.CHUNK_MASK];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the version of the model this snapshot was taken from
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns an index of the store this snapshot was taken from. The indexes
+   * describe the current state of the store, so they are only returned while
+   * this snapshot is that state.
+   *
+   * @param type the class of the index
+   * @return the index, or null if there is none or the store has changed
+   *         since this snapshot was taken
+   */
+  public <T extends TransactionIndex> T getIndex(Class<T> type) {
+    if (store.version() != version) {
+      return null;
+    }
+    return store.getIndex(type);
+  }
+
+  /**
+   * Converts slots (see {@code TransactionIndex}) to positions. The slots must
+   * be live in this snapshot and in ascending order. Consecutive slots are
+   * ranked incrementally, so the cost is proportional to the number of slots,
+   * not to the size of the snapshot.
+   *
+   * @param slots the slots, in ascending order
+   * @param length the number of slots to convert
+   * @return the positions of the slots, in ascending order
+   */
+  public int[] positionsOfSlots(int[] slots, int length) {
+    int[] positions = new int[length];
+    if (size == slotCount) {
+      // Nothing was removed, so the positions are the slots
+      System.arraycopy(slots, 0, positions, 0, length);
+      return positions;
+    }
+    int chunkIndex = -1;
+    long[] live = null;
+    // The number of live slots in the current chunk before the given word
+    int word = 0;
+    int liveBeforeWord = 0;
+    for (int i = 0; i < length; i++) {
+      int slot = slots[i];
+      if (slot >>> TransactionStore.CHUNK_SHIFT != chunkIndex) {
+        chunkIndex = slot >>> TransactionStore.CHUNK_SHIFT;
+        live = chunks[chunkIndex].live;
+        word = 0;
+        liveBeforeWord = 0;
+      }
+      int offset = slot & TransactionStore.CHUNK_MASK;
+      while (word < offset >>> 6) {
+        liveBeforeWord += Long.bitCount(live[word++]);
+      }
+      positions[i] = liveBefore[chunkIndex] + liveBeforeWord + Long.bitCount(live[word] & ((1L << offset) - 1));
+    }
+    return positions;
+  }
+
+  /**
+   * Converts slots (see {@code TransactionIndex}) to positions, like
+   * {@link #positionsOfSlots(int[], int)}, but the slots may come in any
+   * order. Every slot is ranked on its own within its chunk, so the cost is
+   * O(1) per slot and the slots need not be sorted first.
+   *
+   * @param slots the slots, live in this snapshot
+   * @param length the number of slots to convert
+   * @return the set of the positions of the slots
+   */
+  public BitSet positionSetOfSlots(int[] slots, int length) {
+    BitSet positions = new BitSet(size);
+    for (int i = 0; i < length; i++) {
+      int slot = slots[i];
+      if (size == slotCount) {
+        // Nothing was removed, so the positions are the slots
+        positions.set(slot);
+      } else {
+        int chunkIndex = slot >>> TransactionStore.CHUNK_SHIFT;
+        positions.set(liveBefore[chunkIndex] + chunks[chunkIndex].rank(slot & TransactionStore.CHUNK_MASK));
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * @param position the position of the transaction
+   * @return the id of the transaction at the given position
+   */
+  public long idAt(int position) {
+    return get(position).getId();
+  }
+
+  /**
+   * @param position the position of the transaction
+   * @return the amount, in cents, of the transaction at the given position
+   */
+  public long amountCentsAt(int position) {
+    int slot = slotOf(position);
+    return chunks[slot >>> TransactionStore.CHUNK_SHIFT].amounts[slot & TransactionStore.CHUNK_MASK];
+  }
+
+  /**
+   * @param position the position of the transaction
+   * @return the amount of the transaction at the given position
+   */
+  public double amountAt(int position) {
+    return Money.toAmount(amountCentsAt(position));
+  }
+
+  /**
+   * @param position the position of the transaction
+   * @return the timestamp, in epoch milliseconds, of the transaction at the
+   *         given position
+   */
+  public long timestampAt(int position) {
+    int slot = slotOf(position);
+    return chunks[slot >>> TransactionStore.CHUNK_SHIFT].timestamps[slot & TransactionStore.CHUNK_MASK];
+  }
+
+  /**
+   * @param position the position of the transaction
+   * @return the {@code CategoryDictionary} ordinal of the category of the
+   *         transaction at the given position
+   */
+  public int categoryOrdinalAt(int position) {
+    int slot = slotOf(position);
+    return CategoryDictionary.fromByte(
+        chunks[slot >>> TransactionStore.CHUNK_SHIFT].categories[slot & TransactionStore.CHUNK_MASK]);
+  }
+
+  /**
+   * Sums the amount column chunk by chunk, with the {@code AmountKernel}. The
+   * sum is exact. Removed slots hold a zero amount, so the loop does not need
+   * to test the live bits.
+   *
+   * @return the sum of all amounts in this snapshot, in cents
+   */
+  public long sumAmountCents() {
+    long total = 0;
+    int remaining = slotCount;
+    for (int i = 0; remaining > 0; i++) {
+      int length = Math.min(remaining, TransactionStore.CHUNK_SIZE);
+      total += AmountKernel.INSTANCE.sum(chunks[i].amounts, length);
+      remaining -= length;
+    }
+    return total;
+  }
+
+  /**
+   * Compares the amount column with a range chunk by chunk, with the
+   * {@code AmountKernel}, and keeps the matches of the live slots.
+   *
+   * @param minCents the lowest amount, in cents (inclusive)
+   * @param maxCents the highest amount, in cents (inclusive)
+   * @return the positions of the transactions with an amount in the range
+   */
+  public BitSet positionsWithAmountBetween(long minCents, long maxCents) {
+    long[] positions = new long[(size + 63) >>> 6];
+    long[] mask = new long[TransactionStore.CHUNK_SIZE >>> 6];
+    int remaining = slotCount;
+    for (int i = 0; remaining > 0; i++) {
+      int length = Math.min(remaining, TransactionStore.CHUNK_SIZE);
+      AmountKernel.INSTANCE.matchBetween(chunks[i].amounts, length, minCents, maxCents, mask);
+      long[] live = chunks[i].live;
+      int words = (length + 63) >>> 6;
+      if (size == slotCount) {
+        // Nothing was removed, so the positions are the slots, and a chunk
+        // starts at a multiple of 64
+        System.arraycopy(mask, 0, positions, i << (TransactionStore.CHUNK_SHIFT - 6), words);
+      } else {
+        int liveBeforeWord = liveBefore[i];
+        for (int word = 0; word < words; word++) {
+          long bits = mask[word] & live[word];
+          while (bits != 0) {
+            long lowest = bits & -bits;
+            int position = liveBeforeWord + Long.bitCount(live[word] & (lowest - 1));
+            positions[position >>> 6] |= 1L << position;
+            bits ^= lowest;
+          }
+          liveBeforeWord += Long.bitCount(live[word]);
+        }
+      }
+      remaining -= length;
+    }
+    return BitSet.valueOf(positions);
+  }
+
+  /**
+   * @return the sum of all amounts in this snapshot
+   */
+  public double sumAmounts() {
+    return Money.toAmount(sumAmountCents());
+  }
+
+  /**
+   * @return a new cursor positioned before the first transaction
+   */
+  public Cursor cursor() {
+    return new Cursor(0, size);
+  }
+
+  /**
+   * @param fromPosition the first position of the range (inclusive)
+   * @param toPosition the last position of the range (exclusive)
+   * @return a new cursor over the given range of positions
+   */
+  public Cursor cursor(int fromPosition, int toPosition) {
+    if (fromPosition < 0 || toPosition > size || fromPosition > toPosition) {
+      throw new IndexOutOfBoundsException("Range: " + fromPosition + " to " + toPosition + ", size: " + size);
+    }
+    return new Cursor(fromPosition, toPosition);
+  }
+
+  /**
+   * @return a spliterator over all positions, which splits them in halves and
+   *         walks them with a {@link Cursor}
+   */
+  @Override
+  public RangeSpliterator spliterator() {
+    return new RangeSpliterator(0, size);
+  }
+
+  /**
+   * The {@code RangeSpliterator} covers a range of positions of the snapshot.
+   * It splits the range in halves at multiples of 64, so that the parts can
+   * fill the words of one position bitmap without sharing a word. A scan
+   * takes the {@link #cursor()} of a part, to read the columns directly.
+   */
+  public final class RangeSpliterator implements Spliterator<Transaction> {
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+
+    private int from;
+    private final int to;
+    // Created when the traversal begins, which ends the splitting
+    private Cursor cursor;
+
+    private RangeSpliterator(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * @return the first position of the range (inclusive)
+     */
+    public int fromPosition() {
+      return from;
+    }
+
+    /**
+     * @return the last position of the range (exclusive)
+     */
+    public int toPosition() {
+      return to;
+    }
+
+    /**
+     * Starts the traversal of the range, after which it is not split anymore.
+     *
+     * @return the cursor over the remaining positions of the range
+     */
+    public Cursor cursor() {
+      if (cursor == null) {
+        cursor = new Cursor(from, to);
+      }
+      return cursor;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Transaction> action) {
+      Cursor c = cursor();
+      if (!c.next()) {
+        return false;
+      }
+      action.accept(c.transaction());
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Transaction> action) {
+      Cursor c = cursor();
+      while (c.next()) {
+        action.accept(c.transaction());
+      }
+    }
+
+    /**
+     * Splits off the first half of the range until at most {@code partSize}
+     * positions are left, for a fork/join task that forks one task per part
+     * split off and then walks the rest itself.
+     *
+     * @param partSize the largest part a task walks on its own
+     * @return the parts split off, the largest first
+     */
+    public List<RangeSpliterator> splitDown(int partSize) {
+      List<RangeSpliterator> parts = new ArrayList<RangeSpliterator>();
+      RangeSpliterator prefix;
+      while (estimateSize() > partSize && (prefix = trySplit()) != null) {
+        parts.add(prefix);
+      }
+      return parts;
+    }
+
+    @Override
+    public RangeSpliterator trySplit() {
+      if (cursor != null) {
+        return null;
+      }
+      int middle = (from + (to - from) / 2) & ~63;
+      if (middle <= from) {
+        return null;
+      }
+      RangeSpliterator prefix = new RangeSpliterator(from, middle);
+      from = middle;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return (cursor == null) ? to - from : to - cursor.position() - 1;
+    }
+
+    @Override
+    public int characteristics() {
+      return CHARACTERISTICS;
+    }
+  }
+
+  /**
+   * The {@code Cursor} walks the transactions of the snapshot in order and
+   * reads their columns directly:
+   *
+   * <pre>
+   * TransactionSnapshot.Cursor cursor = snapshot.cursor();
+   * while (cursor.next()) {
+   *   ... cursor.position(), cursor.amountCents(), ...
+   * }
+   * </pre>
+   */
+  public final class Cursor {
+
+    private int chunkIndex;
+    private int offset;
+    private int position;
+    private Chunk chunk;
+    private final int end;
+
+    private Cursor(int fromPosition, int toPosition) {
+      end = toPosition;
+      position = fromPosition - 1;
+      if (fromPosition < toPosition) {
+        // Start just before the slot of the first position
+        int slot = slotOf(fromPosition);
+        chunkIndex = slot >>> TransactionStore.CHUNK_SHIFT;
+        offset = (slot & TransactionStore.CHUNK_MASK) - 1;
+        chunk = chunks[chunkIndex];
+      }
+    }
+
+    /**
+     * Moves to the next transaction.
+     *
+     * @return false if there are no more transactions
+     */
+    public boolean next() {
+      if (position + 1 >= end) {
+        return false;
+      }
+      offset = chunk.nextLive(offset + 1);
+      while (offset == TransactionStore.CHUNK_SIZE) {
+        chunk = chunks[++chunkIndex];
+        offset = chunk.nextLive(0);
+      }
+      position++;
+      return true;
+    }
+
+    /**
+     * @return the position of the current transaction
+     */
+    public int position() {
+      return position;
+    }
+
+    /**
+     * @return the slot (see {@code TransactionIndex}) of the current
+     *         transaction
+     */
+    public int slot() {
+      return (chunkIndex << TransactionStore.CHUNK_SHIFT) + offset;
+    }
+
+    /**
+     * @return the current transaction
+     */
+    public Transaction transaction() {
+      return chunk.rows[offset];
+    }
+
+    /**
+     * @return the amount, in cents, of the current transaction
+     */
+    public long amountCents() {
+      return chunk.amounts[offset];
+    }
+
+    /**
+     * @return the timestamp, in epoch milliseconds, of the current transaction
+     */
+    public long timestamp() {
+      return chunk.timestamps[offset];
+    }
+
+    /**
+     * @return the {@code CategoryDictionary} ordinal of the category of the
+     *         current transaction
+     */
+    public int categoryOrdinal() {
+      return CategoryDictionary.fromByte(chunk.categories[offset]);
+    }
+  }
+
+  // The transaction in the given live slot
+  Transaction transactionAtSlot(int slot) {
+    return chunks[slot >>> TransactionStore.CHUNK_SHIFT].rows[slot & TransactionStore.CHUNK_MASK];
+  }
+
+  // The slot of the transaction at the given position
+  int slotAt(int position) {
+    return slotOf(position);
+  }
+
+  private int slotOf(int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+    }
+    if (size == slotCount) {
+      // Nothing was removed, so the positions are the slots
+      return position;
+    }
+    return TransactionStore.select(chunks, liveBefore, TransactionStore.chunkCount(slotCount), position);
+  }
+}
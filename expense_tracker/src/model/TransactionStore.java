@@ -0,0 +1,498 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code TransactionStore} keeps the transactions of the
+ * {@code ExpenseTrackerModel} in column-oriented form.
+ * <p>
+ * Instead of one list of {@code Transaction} objects, every attribute that the
+ * filters and the totals scan is kept in its own primitive array: the amounts
+ * as {@code Money} cents in a {@code long[]}, the timestamps as epoch
+ * milliseconds in a {@code long[]} and the categories as {@code byte} ordinals
+ * of the {@code CategoryDictionary}. The {@code Transaction} objects are kept
+ * in a parallel column so that the existing API can still hand them out.
+ * <p>
+ * The columns grow in fixed size chunks, so appending never copies the rows
+ * that are already stored and every scan walks contiguous primitive memory one
+ * chunk at a time.
+ * <p>
+ * Every transaction is stored in a slot that does not move when other
+ * transactions are removed. A removal only clears the live bit of the slot,
+ * and a map from the transaction id to its slot finds that slot in O(1)
+ * expected time. The position of a transaction (its row in the view) is the
+ * number of live slots before it, which every chunk keeps as a count of the
+ * live slots in the chunks before it; a removal decrements the counts of the
+ * later chunks, so it costs O(n / CHUNK_SIZE) small steps besides the O(1)
+ * lookup. The removed slots are reclaimed by compacting the store once they
+ * make up half of it, which amortizes the compaction over the removals.
+ * <p>
+ * Snapshots share the chunks with the store instead of copying them, so
+ * taking one is O(1). A chunk that is shared with a snapshot is copied before
+ * a removal changes it (copy-on-write). Appends never need a copy: they only
+ * write slots past the end of every existing snapshot, and a snapshot never
+ * reads past its own end. Every change increases the version of the store,
+ * which the snapshots carry along.
+ * <p>
+ * Secondary indexes ({@code TransactionIndex}) can be attached to the store.
+ * The store tells them about every added and removed slot, and asks them to
+ * rebuild when the slots are renumbered.
+ */
+public class TransactionStore {
+
+  static final int CHUNK_SHIFT = 12;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /**
+   * One fixed size block of every column, plus the live bits of its slots.
+   */
+  static final class Chunk {
+    final long[] amounts;
+    final long[] timestamps;
+    final byte[] categories;
+    final Transaction[] rows;
+    final long[] live;
+    // The store that may change this chunk in place, see TransactionStore.owner
+    final Object owner;
+
+    Chunk(Object owner) {
+      this.owner = owner;
+      amounts = new long[CHUNK_SIZE];
+      timestamps = new long[CHUNK_SIZE];
+      categories = new byte[CHUNK_SIZE];
+      rows = new Transaction[CHUNK_SIZE];
+      live = new long[CHUNK_SIZE >>> 6];
+    }
+
+    Chunk(Chunk other, Object owner) {
+      this.owner = owner;
+      amounts = other.amounts.clone();
+      timestamps = other.timestamps.clone();
+      categories = other.categories.clone();
+      rows = other.rows.clone();
+      live = other.live.clone();
+    }
+
+    void set(int offset, Transaction t) {
+      amounts[offset] = t.getAmountCents();
+      timestamps[offset] = t.getTimestampMillis();
+      categories[offset] = (byte) CategoryDictionary.intern(t.getCategory());
+      rows[offset] = t;
+      live[offset >>> 6] |= 1L << offset;
+    }
+
+    void clear(int offset) {
+      live[offset >>> 6] &= ~(1L << offset);
+      // A removed slot adds nothing to the sums of the amount column
+      amounts[offset] = 0;
+      // Do not keep the removed transaction reachable
+      rows[offset] = null;
+    }
+
+    // Forgets the slots from the given offset on
+    void truncate(int length) {
+      for (int offset = length; offset < CHUNK_SIZE; offset++) {
+        amounts[offset] = 0;
+        rows[offset] = null;
+      }
+      int word = length >>> 6;
+      if (word < live.length) {
+        live[word] &= (1L << length) - 1;
+        for (int i = word + 1; i < live.length; i++) {
+          live[i] = 0;
+        }
+      }
+    }
+
+    boolean isLive(int offset) {
+      return (live[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    /**
+     * @return the number of live slots before the given offset
+     */
+    int rank(int offset) {
+      int word = offset >>> 6;
+      int count = 0;
+      for (int i = 0; i < word; i++) {
+        count += Long.bitCount(live[i]);
+      }
+      return count + Long.bitCount(live[word] & ((1L << offset) - 1));
+    }
+
+    /**
+     * @return the offset of the n-th (counting from 0) live slot
+     */
+    int select(int n) {
+      for (int i = 0;; i++) {
+        int count = Long.bitCount(live[i]);
+        if (n < count) {
+          long word = live[i];
+          for (int k = 0; k < n; k++) {
+            // Clear the lowest set bit
+            word &= word - 1;
+          }
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        n -= count;
+      }
+    }
+
+    /**
+     * @return the offset of the first live slot at or after the given offset,
+     *         or {@code CHUNK_SIZE} if there is none
+     */
+    int nextLive(int offset) {
+      int i = offset >>> 6;
+      if (i >= live.length) {
+        return CHUNK_SIZE;
+      }
+      long word = live[i] & (-1L << offset);
+      while (word == 0) {
+        if (++i == live.length) {
+          return CHUNK_SIZE;
+        }
+        word = live[i];
+      }
+      return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+  }
+
+  private Chunk[] chunks;
+  // For every chunk, the number of live slots in the chunks before it
+  private int[] liveBefore;
+  private int slotCount;
+  private int size;
+  private final LongIntHashMap slotsById;
+  private long version;
+  // Chunks created under another owner may be shared with a snapshot. Taking a
+  // snapshot replaces the owner, which marks every existing chunk as shared.
+  private Object owner;
+  // True if the chunks and liveBefore arrays are referenced by a snapshot
+  private boolean directoryShared;
+  // The last snapshot, reused until the next change
+  private TransactionSnapshot lastSnapshot;
+  private final List<TransactionIndex> indexes = new ArrayList<TransactionIndex>();
+
+  public TransactionStore() {
+    chunks = new Chunk[4];
+    liveBefore = new int[4];
+    slotCount = 0;
+    size = 0;
+    slotsById = new LongIntHashMap();
+    version = 0;
+    owner = new Object();
+    directoryShared = false;
+  }
+
+  /**
+   * @return the number of stored transactions
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the version of the store, increased by every change
+   */
+  public long version() {
+    return version;
+  }
+
+  /**
+   * Attaches the given index, which is built from the stored transactions
+   * and from then on kept up to date.
+   *
+   * @param index the index to attach
+   */
+  public void addIndex(TransactionIndex index) {
+    if (index == null) {
+      throw new IllegalArgumentException("The index must be non-null.");
+    }
+    indexes.add(index);
+    index.reset(snapshot());
+  }
+
+  /**
+   * @param type the class of the index
+   * @return the attached index of the given class, or null if there is none
+   */
+  public <T extends TransactionIndex> T getIndex(Class<T> type) {
+    for (TransactionIndex index : indexes) {
+      if (type.isInstance(index)) {
+        return type.cast(index);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Appends the given transaction after the last stored one.
+   *
+   * @param t the transaction to append
+   */
+  public void add(Transaction t) {
+    if (slotsById.get(t.getId()) != LongIntHashMap.MISSING) {
+      throw new IllegalArgumentException("The transaction is already stored.");
+    }
+    int slot = slotCount;
+    append(t);
+    for (TransactionIndex index : indexes) {
+      index.added(slot, t);
+    }
+  }
+
+  // Appends without telling the indexes
+  private void append(Transaction t) {
+    int chunkIndex = slotCount >>> CHUNK_SHIFT;
+    if (chunkIndex == chunks.length) {
+      Chunk[] grownChunks = new Chunk[chunks.length * 2];
+      System.arraycopy(chunks, 0, grownChunks, 0, chunks.length);
+      chunks = grownChunks;
+      int[] grownLiveBefore = new int[chunks.length];
+      System.arraycopy(liveBefore, 0, grownLiveBefore, 0, liveBefore.length);
+      liveBefore = grownLiveBefore;
+      directoryShared = false;
+    }
+    // Appending writes past the end of every snapshot, so even a shared
+    // chunk or directory can be changed in place.
+    if (chunks[chunkIndex] == null) {
+      chunks[chunkIndex] = new Chunk(owner);
+      liveBefore[chunkIndex] = size;
+    }
+    chunks[chunkIndex].set(slotCount & CHUNK_MASK, t);
+    slotsById.put(t.getId(), slotCount);
+    slotCount++;
+    size++;
+    changed();
+  }
+
+  /**
+   * @param position the position of the transaction
+   * @return the transaction stored at the given position
+   */
+  public Transaction get(int position) {
+    int slot = slotOf(position);
+    return chunks[slot >>> CHUNK_SHIFT].rows[slot & CHUNK_MASK];
+  }
+
+  /**
+   * Finds the given transaction object through its id.
+   *
+   * @param t the transaction to look for
+   * @return its position, or -1 if it is not stored
+   */
+  public int indexOf(Transaction t) {
+    int slot = slotsById.get(t.getId());
+    if (slot == LongIntHashMap.MISSING || chunks[slot >>> CHUNK_SHIFT].rows[slot & CHUNK_MASK] != t) {
+      return -1;
+    }
+    return liveBefore[slot >>> CHUNK_SHIFT] + chunks[slot >>> CHUNK_SHIFT].rank(slot & CHUNK_MASK);
+  }
+
+  /**
+   * @param id the id of a transaction
+   * @return the position of the transaction with the given id, or -1 if it is
+   *         not stored
+   */
+  public int positionOf(long id) {
+    int slot = slotsById.get(id);
+    if (slot == LongIntHashMap.MISSING) {
+      return -1;
+    }
+    return liveBefore[slot >>> CHUNK_SHIFT] + chunks[slot >>> CHUNK_SHIFT].rank(slot & CHUNK_MASK);
+  }
+
+  /**
+   * @param id the id of a transaction
+   * @return true if a transaction with the given id is stored
+   */
+  public boolean containsId(long id) {
+    return slotsById.get(id) != LongIntHashMap.MISSING;
+  }
+
+  /**
+   * Removes the transaction with the given id. The slot is found in O(1)
+   * expected time, and the live counts of the chunks after it are updated,
+   * O(n / CHUNK_SIZE).
+   *
+   * @param id the id of the transaction to remove
+   * @return the removed transaction, or null if no transaction has this id
+   */
+  public Transaction remove(long id) {
+    int slot = slotsById.remove(id);
+    if (slot == LongIntHashMap.MISSING) {
+      return null;
+    }
+    return removeSlot(slot);
+  }
+
+  /**
+   * Removes the transaction at the given position.
+   *
+   * @param position the position of the transaction to remove
+   * @return the removed transaction
+   */
+  public Transaction removeAt(int position) {
+    int slot = slotOf(position);
+    Transaction removed = chunks[slot >>> CHUNK_SHIFT].rows[slot & CHUNK_MASK];
+    slotsById.remove(removed.getId());
+    return removeSlot(slot);
+  }
+
+  /**
+   * Creates a read-only snapshot of the stored transactions in O(1). The
+   * snapshot shares the chunks with the store and does not see later changes.
+   *
+   * @return the snapshot
+   */
+  public TransactionSnapshot snapshot() {
+    if (lastSnapshot == null) {
+      lastSnapshot = new TransactionSnapshot(this, chunks, liveBefore, slotCount, size, version);
+      owner = new Object();
+      directoryShared = true;
+    }
+    return lastSnapshot;
+  }
+
+  /**
+   * Returns the store to the state of the given snapshot, which must have been
+   * taken from this store. Used to roll back a batch of changes. O(n), because
+   * the id map is rebuilt.
+   *
+   * @param snapshot the snapshot to return to
+   */
+  void restore(TransactionSnapshot snapshot) {
+    int chunkCount = chunkCount(snapshot.slotCount);
+    chunks = new Chunk[Math.max(4, Integer.highestOneBit(Math.max(1, chunkCount)) * 2)];
+    liveBefore = new int[chunks.length];
+    System.arraycopy(snapshot.chunks, 0, chunks, 0, chunkCount);
+    System.arraycopy(snapshot.liveBefore, 0, liveBefore, 0, chunkCount);
+    slotCount = snapshot.slotCount;
+    size = snapshot.size();
+    owner = new Object();
+    directoryShared = false;
+    int tailLength = slotCount & CHUNK_MASK;
+    if (tailLength != 0) {
+      // Appends after the snapshot may have filled the rest of the last chunk
+      Chunk tail = new Chunk(chunks[chunkCount - 1], owner);
+      tail.truncate(tailLength);
+      chunks[chunkCount - 1] = tail;
+    }
+    slotsById.clear();
+    for (int i = 0; i < chunkCount; i++) {
+      Chunk chunk = chunks[i];
+      for (int offset = chunk.nextLive(0); offset < CHUNK_SIZE; offset = chunk.nextLive(offset + 1)) {
+        slotsById.put(chunk.rows[offset].getId(), (i << CHUNK_SHIFT) + offset);
+      }
+    }
+    changed();
+    resetIndexes();
+  }
+
+  private void resetIndexes() {
+    if (indexes.isEmpty()) {
+      return;
+    }
+    TransactionSnapshot all = snapshot();
+    for (TransactionIndex index : indexes) {
+      index.reset(all);
+    }
+  }
+
+  private void changed() {
+    version++;
+    lastSnapshot = null;
+  }
+
+  // Makes the given chunk, and the directory, safe to change in place.
+  private Chunk writableChunk(int chunkIndex) {
+    if (directoryShared) {
+      chunks = chunks.clone();
+      liveBefore = liveBefore.clone();
+      directoryShared = false;
+    }
+    Chunk chunk = chunks[chunkIndex];
+    if (chunk.owner != owner) {
+      chunk = new Chunk(chunk, owner);
+      chunks[chunkIndex] = chunk;
+    }
+    return chunk;
+  }
+
+  private Transaction removeSlot(int slot) {
+    int chunkIndex = slot >>> CHUNK_SHIFT;
+    Chunk chunk = writableChunk(chunkIndex);
+    Transaction removed = chunk.rows[slot & CHUNK_MASK];
+    chunk.clear(slot & CHUNK_MASK);
+    int chunkCount = chunkCount(slotCount);
+    for (int i = chunkIndex + 1; i < chunkCount; i++) {
+      liveBefore[i]--;
+    }
+    size--;
+    changed();
+    for (TransactionIndex index : indexes) {
+      index.removed(slot, removed);
+    }
+    int removedSlots = slotCount - size;
+    if (removedSlots >= CHUNK_SIZE && removedSlots * 2 >= slotCount) {
+      compact();
+    }
+    return removed;
+  }
+
+  // Moves the live rows into fresh chunks, without removed slots in between.
+  // The old chunks are left untouched for the snapshots that still use them.
+  private void compact() {
+    int chunkCount = chunkCount(slotCount);
+    Chunk[] oldChunks = chunks;
+    chunks = new Chunk[Math.max(4, Integer.highestOneBit(Math.max(1, chunkCount(size))) * 2)];
+    liveBefore = new int[chunks.length];
+    directoryShared = false;
+    slotCount = 0;
+    size = 0;
+    slotsById.clear();
+    for (int i = 0; i < chunkCount; i++) {
+      Chunk chunk = oldChunks[i];
+      for (int offset = chunk.nextLive(0); offset < CHUNK_SIZE; offset = chunk.nextLive(offset + 1)) {
+        append(chunk.rows[offset]);
+      }
+    }
+    resetIndexes();
+  }
+
+  private int slotOf(int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+    }
+    if (size == slotCount) {
+      // Nothing was removed, so the positions are the slots
+      return position;
+    }
+    return select(chunks, liveBefore, chunkCount(slotCount), position);
+  }
+
+  static int chunkCount(int slotCount) {
+    return (slotCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+  }
+
+  /**
+   * Finds the slot of the live transaction at the given position.
+   */
+  static int select(Chunk[] chunks, int[] liveBefore, int chunkCount, int position) {
+    // The last chunk whose live rows start at or before the position
+    int low = 0;
+    int high = chunkCount - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (liveBefore[middle] <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return (low << CHUNK_SHIFT) + chunks[low].select(position - liveBefore[low]);
+  }
+}
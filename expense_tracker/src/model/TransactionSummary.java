@@ -0,0 +1,166 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code TransactionSummary} holds the aggregates of the transactions of
+ * the {@code ExpenseTrackerModel}: the count, total, mean, minimum and maximum
+ * of all transactions and of every category.
+ * <p>
+ * A summary is immutable and describes the model at the time it was taken
+ * ({@code ExpenseTrackerModel.getSummary()}). The sums are kept exactly, in
+ * cents, so they do not drift however many transactions are added and
+ * removed.
+ */
+public final class TransactionSummary {
+
+  static final TransactionSummary EMPTY = new TransactionSummary(new Aggregate(null, 0, 0, 0, 0),
+      new Aggregate[0]);
+
+  private final Aggregate total;
+  private final Aggregate[] categories;
+
+  // categories is indexed by category ordinal, with null for empty categories
+  TransactionSummary(Aggregate total, Aggregate[] categories) {
+    this.total = total;
+    this.categories = categories;
+  }
+
+  /**
+   * @return the number of transactions
+   */
+  public int getCount() {
+    return total.getCount();
+  }
+
+  /**
+   * @return the sum of all amounts, in cents
+   */
+  public long getTotalCents() {
+    return total.getTotalCents();
+  }
+
+  /**
+   * @return the sum of all amounts
+   */
+  public double getTotal() {
+    return total.getTotal();
+  }
+
+  /**
+   * @return the mean amount, or 0 if there are no transactions
+   */
+  public double getMean() {
+    return total.getMean();
+  }
+
+  /**
+   * @return the aggregates of all transactions
+   */
+  public Aggregate getOverall() {
+    return total;
+  }
+
+  /**
+   * @param category the category, in any case
+   * @return the aggregates of the category, with a count of 0 if it has no
+   *         transactions
+   */
+  public Aggregate getCategory(String category) {
+    int ordinal = CategoryDictionary.ordinalOf(category);
+    if (ordinal != CategoryDictionary.UNKNOWN && ordinal < categories.length && categories[ordinal] != null) {
+      return categories[ordinal];
+    }
+    return new Aggregate(category, 0, 0, 0, 0);
+  }
+
+  /**
+   * @return the aggregates of the categories that have transactions
+   */
+  public List<Aggregate> getCategories() {
+    Aggregate[] present = new Aggregate[categories.length];
+    int count = 0;
+    for (Aggregate aggregate : categories) {
+      if (aggregate != null) {
+        present[count++] = aggregate;
+      }
+    }
+    return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(present, count)));
+  }
+
+  @Override
+  public String toString() {
+    return "TransactionSummary[" + total + ", " + getCategories() + "]";
+  }
+
+  /**
+   * The aggregates of a group of transactions. The minimum and maximum are 0
+   * if the group is empty.
+   */
+  public static final class Aggregate {
+
+    private final String category;
+    private final int count;
+    private final long totalCents;
+    private final long minCents;
+    private final long maxCents;
+
+    Aggregate(String category, int count, long totalCents, long minCents, long maxCents) {
+      this.category = category;
+      this.count = count;
+      this.totalCents = totalCents;
+      this.minCents = minCents;
+      this.maxCents = maxCents;
+    }
+
+    /**
+     * @return the category, or null for the aggregates of all transactions
+     */
+    public String getCategory() {
+      return category;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public long getTotalCents() {
+      return totalCents;
+    }
+
+    public double getTotal() {
+      return Money.toAmount(totalCents);
+    }
+
+    public long getMinCents() {
+      return minCents;
+    }
+
+    public double getMin() {
+      return Money.toAmount(minCents);
+    }
+
+    public long getMaxCents() {
+      return maxCents;
+    }
+
+    public double getMax() {
+      return Money.toAmount(maxCents);
+    }
+
+    /**
+     * @return the mean amount, or 0 if the group is empty
+     */
+    public double getMean() {
+      return (count == 0) ? 0 : (double) totalCents / count / Money.CENTS_PER_UNIT;
+    }
+
+    @Override
+    public String toString() {
+      return (category == null ? "all" : category) + ": count=" + count + ", total=" + Money.format(totalCents)
+          + ", min=" + Money.format(minCents) + ", max=" + Money.format(maxCents);
+    }
+  }
+}
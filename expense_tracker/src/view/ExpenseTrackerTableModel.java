@@ -12,4 +12,14 @@ public class ExpenseTrackerTableModel extends DefaultTableModel
     public boolean isCellEditable(int row, int column) {
 	return false;
     }
+
+    // The serial number is derived from the row, so that inserting or
+    // removing a row does not require renumbering the rows after it.
+    public Object getValueAt(int row, int column) {
+	Object value = super.getValueAt(row, column);
+	if (column == 0 && !(value instanceof String)) {
+	    return row + 1;
+	}
+	return value;
+    }
 }
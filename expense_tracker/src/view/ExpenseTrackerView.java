@@ -10,15 +10,24 @@ import java.awt.event.ActionListener;
 import java.text.NumberFormat;
 
 import model.ExpenseTrackerModel;
+import model.ExpenseTrackerModelEvent;
 import model.ExpenseTrackerModelListener;
+import model.Money;
+import model.RowBitmap;
 import model.Transaction;
+import model.TransactionSnapshot;
+import model.TransactionSummary;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelListener {
 
+  private static final Color HIGHLIGHT_COLOR = new Color(173, 255, 168); // Light green
+
   private JTable transactionsTable;
+  // The one renderer of the table, which highlights the matched rows
+  private final HighlightRenderer highlightRenderer = new HighlightRenderer();
   private JButton addTransactionBtn;
   private JFormattedTextField amountField;
   private JTextField categoryField;
@@ -31,6 +40,10 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
   private JTextField amountFilterField;
   private JButton amountFilterBtn;
 
+  private JButton queryFilterBtn;
+
+  private JButton topKBtn;
+
   private JButton undoButton;
 
   public ExpenseTrackerView() {
@@ -42,6 +55,7 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
 
     // Create table
     transactionsTable = new JTable(model);
+    transactionsTable.setDefaultRenderer(Object.class, highlightRenderer);
 
     addTransactionBtn = new JButton("Add Transaction");
 
@@ -63,6 +77,10 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
     amountFilterField = new JTextField(10);
     amountFilterBtn = new JButton("Filter by Amount");
 
+    queryFilterBtn = new JButton("Filter by Query");
+
+    topKBtn = new JButton("Top Expenses");
+
     // Initialize the undo button
     undoButton = new JButton("Undo");
 
@@ -77,6 +95,8 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
     JPanel buttonPanel = new JPanel();
     buttonPanel.add(amountFilterBtn);
     buttonPanel.add(categoryFilterBtn);
+    buttonPanel.add(queryFilterBtn);
+    buttonPanel.add(topKBtn);
     buttonPanel.add(undoButton);
 
     // Add panels to frame
@@ -128,6 +148,23 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
     return JOptionPane.showInputDialog(this, "Enter Category Filter:");
   }
 
+  public void addApplyQueryFilterListener(ActionListener listener) {
+    queryFilterBtn.addActionListener(listener);
+  }
+
+  public String getQueryFilterInput() {
+    return JOptionPane.showInputDialog(this, "Enter Query (e.g. category=food and amount>=20 and date>=2026-01-01):");
+  }
+
+  public void addTopKListener(ActionListener listener) {
+    topKBtn.addActionListener(listener);
+  }
+
+  public String getTopKInput() {
+    return JOptionPane.showInputDialog(this,
+        "Enter the number of expenses, optionally followed by a query (e.g. 20 category=food):");
+  }
+
   public void addApplyAmountFilterListener(ActionListener listener) {
     amountFilterBtn.addActionListener(listener);
   }
@@ -144,15 +181,26 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
   }
 
   protected void refreshTable(List<Transaction> transactions) {
+    long totalCents = 0;
+    // Calculate total cost, exactly in cents
+    if (transactions instanceof TransactionSnapshot) {
+      // Sums the amount column, several amounts at a time where the CPU can
+      totalCents = ((TransactionSnapshot) transactions).sumAmountCents();
+    } else {
+      for (Transaction t : transactions) {
+        totalCents += t.getAmountCents();
+      }
+    }
+    refreshTable(transactions, totalCents);
+  }
+
+  // The total of the transactions of the model comes from its summary
+  private void refreshTable(List<Transaction> transactions, long totalCents) {
     // Clear existing rows
     model.setRowCount(0);
     // Get row count
     int rowNum = model.getRowCount();
-    double totalCost = 0;
-    // Calculate total cost
-    for (Transaction t : transactions) {
-      totalCost += t.getAmount();
-    }
+    double totalCost = Money.toAmount(totalCents);
 
     // Add rows from transactions list
     for (Transaction t : transactions) {
@@ -163,7 +211,7 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
     model.addRow(totalRow);
 
     // Clear the previous highlighting
-    transactionsTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer());
+    highlightRenderer.setMatchedRows(RowBitmap.EMPTY);
 
     // Fire table update
     transactionsTable.updateUI();
@@ -175,25 +223,49 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
   }
 
   protected void highlightRows(List<Integer> rowIndexes) {
+    highlightRows(RowBitmap.fromCollection(rowIndexes));
+  }
+
+  protected void highlightRows(RowBitmap rows) {
     // The row indices are being used as hashcodes for the transactions.
     // The row index directly maps to the the transaction index in the list.
-    transactionsTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
-      @Override
-      public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-          boolean hasFocus, int row, int column) {
-        Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-        if (isSelected) {
-          c.setBackground(Color.BLUE);
-        } else if (rowIndexes.contains(row)) {
-          c.setBackground(new Color(173, 255, 168)); // Light green
-        } else {
-          c.setBackground(table.getBackground());
-        }
+    highlightRenderer.setMatchedRows(rows);
+    transactionsTable.repaint();
+  }
+
+  /**
+   * Renders every cell of the table. A single instance is installed once; it
+   * only holds the matched rows, so that rendering a cell is a bit test in
+   * the bitmap and allocates nothing.
+   */
+  private static class HighlightRenderer extends DefaultTableCellRenderer {
+
+    private static final long serialVersionUID = 1L;
+
+    private RowBitmap matchedRows = RowBitmap.EMPTY;
+
+    void setMatchedRows(RowBitmap matchedRows) {
+      this.matchedRows = matchedRows;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+        boolean hasFocus, int row, int column) {
+      // Forget the background of the previous cell
+      setBackground(null);
+      Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+      if (matchedRows.isEmpty()) {
         return c;
       }
-    });
-
-    transactionsTable.repaint();
+      if (isSelected) {
+        c.setBackground(Color.BLUE);
+      } else if (matchedRows.contains(row)) {
+        c.setBackground(HIGHLIGHT_COLOR);
+      } else {
+        c.setBackground(table.getBackground());
+      }
+      return c;
+    }
   }
 
   public List<Transaction> getDisplayedTransactions() {
@@ -204,7 +276,7 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
       Component component = transactionsTable.prepareRenderer(renderer, i, 0);
 
       // Check if the row is highlighted based on the background color
-      if (component.getBackground().equals(new Color(173, 255, 168))) {
+      if (component.getBackground().equals(HIGHLIGHT_COLOR)) {
         Object amountObj = transactionsTable.getValueAt(i, 1); // Assuming amount is in column 1
         Object categoryObj = transactionsTable.getValueAt(i, 2); // Assuming category is in column 2
 
@@ -229,15 +301,79 @@ public class ExpenseTrackerView extends JFrame implements ExpenseTrackerModelLis
     return transactionsTable.getSelectedRow();
   }
 
+  /**
+   * Updates only the rows described by the event, instead of rebuilding the
+   * whole table. Falls back to {@code update} if the table does not match the
+   * model, or for a reset.
+   *
+   * @param event what changed in the model
+   */
+  @Override
+  public void modelChanged(ExpenseTrackerModelEvent event) {
+    // Read the state attached to the event, the model may have changed since
+    TransactionSnapshot transactions = event.getTransactions();
+    if (event instanceof ExpenseTrackerModelEvent.RowsInserted) {
+      ExpenseTrackerModelEvent.RowsInserted inserted = (ExpenseTrackerModelEvent.RowsInserted) event;
+      int insertedCount = inserted.getLastRow() - inserted.getFirstRow() + 1;
+      if (!hasTotalRow() || transactionRowCount() + insertedCount != transactions.size()) {
+        refresh(event);
+        return;
+      }
+      TransactionSnapshot.Cursor cursor = transactions.cursor(inserted.getFirstRow(), inserted.getLastRow() + 1);
+      while (cursor.next()) {
+        Transaction t = cursor.transaction();
+        model.insertRow(cursor.position(), new Object[] { null, t.getAmount(), t.getCategory(), t.getTimestamp() });
+      }
+      model.setValueAt(event.getSummary().getTotal(), model.getRowCount() - 1, 3);
+    } else if (event instanceof ExpenseTrackerModelEvent.RowsRemoved) {
+      ExpenseTrackerModelEvent.RowsRemoved removed = (ExpenseTrackerModelEvent.RowsRemoved) event;
+      int[] rows = removed.getRows();
+      if (!hasTotalRow() || transactionRowCount() - rows.length != transactions.size()) {
+        refresh(event);
+        return;
+      }
+      // Remove from the last row, so that the earlier rows keep their positions
+      for (int i = rows.length - 1; i >= 0; i--) {
+        model.removeRow(rows[i]);
+      }
+      model.setValueAt(event.getSummary().getTotal(), model.getRowCount() - 1, 3);
+    } else if (!(event instanceof ExpenseTrackerModelEvent.FilterMatchesChanged)) {
+      refresh(event);
+      return;
+    }
+
+    if (event.isMatchesChanged()) {
+      // An empty set clears the previous highlighting
+      highlightRows(event.getMatchedFilterRows());
+    }
+  }
+
+  private boolean hasTotalRow() {
+    return model.getRowCount() > 0;
+  }
+
+  // The number of transaction rows, without the total row
+  private int transactionRowCount() {
+    return model.getRowCount() - 1;
+  }
+
   public void update(ExpenseTrackerModel model) {
     System.out.println("update called: " + model.getTransactions().size());
     // System.out.println("update called: " +
     // model.getTransactions().get(model.getTransactions().size() - 1).getAmount());
 
-    refreshTable(model.getTransactions());
+    refresh(model.getTransactions(), model.getSummary(), model.getMatchedFilterRows());
+  }
+
+  private void refresh(ExpenseTrackerModelEvent event) {
+    refresh(event.getTransactions(), event.getSummary(), event.getMatchedFilterRows());
+  }
+
+  private void refresh(List<Transaction> transactions, TransactionSummary summary, RowBitmap matchedRows) {
+    refreshTable(transactions, summary.getTotalCents());
 
-    if (model.getMatchedFilterIndices().size() > 0) {
-      highlightRows(model.getMatchedFilterIndices());
+    if (!matchedRows.isEmpty()) {
+      highlightRows(matchedRows);
     }
   }
 
@@ -4,12 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
 import java.util.List;
 import java.text.ParseException;
 
+import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableModel;
 
 import org.junit.After;
@@ -193,6 +195,28 @@ public class TestExample {
                 checkTotalCostInView(0.00);
         }
 
+        @Test
+        public void testUndoMiddleTransactionInView() {
+                // Setup
+                controller.addTransaction(10.00, "food");
+                controller.addTransaction(20.00, "bills");
+                controller.addTransaction(30.00, "travel");
+                TableModel viewModel = view.getTableModel();
+                assertEquals(4, viewModel.getRowCount());
+
+                // Call the unit under test
+                assertTrue(controller.undoTransaction(1));
+
+                // Check the post-conditions: only the removed row is gone, the serial
+                // numbers follow the rows and the total is updated
+                assertEquals(3, viewModel.getRowCount());
+                checkTransactionInView(model.getTransactions().get(0), 0);
+                checkTransactionInView(model.getTransactions().get(1), 1);
+                assertEquals(2, viewModel.getValueAt(1, 0));
+                assertEquals("Total", viewModel.getValueAt(2, 0));
+                checkTotalCostInView(40.00);
+        }
+
         // filter by amount
         @Test
         public void testFilterByAmount() {
@@ -469,4 +493,23 @@ public class TestExample {
                 assertEquals(1, view.getDisplayedTransactions().size());
         }
 
+        @Test
+        public void testHighlightReusesRenderer() {
+                // Setup
+                controller.addTransaction(50.00, "food");
+                controller.addTransaction(30.00, "entertainment");
+                TableCellRenderer before = view.getTransactionsTable().getDefaultRenderer(Object.class);
+
+                // Call unit under test
+                controller.setFilter(new CategoryFilter("entertainment"));
+                controller.applyFilter();
+
+                // Check the post-conditions: the same renderer highlights the match
+                assertSame(before, view.getTransactionsTable().getDefaultRenderer(Object.class));
+                assertEquals(1, model.getMatchedFilterRows().cardinality());
+                assertTrue(model.getMatchedFilterRows().contains(1));
+                List<Transaction> displayedTransactions = view.getDisplayedTransactions();
+                assertEquals(1, displayedTransactions.size());
+                assertEquals("entertainment", displayedTransactions.get(0).getCategory());
+        }
 }
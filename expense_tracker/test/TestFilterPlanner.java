@@ -0,0 +1,110 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.FilterPlan;
+import model.Filter.FilterPlanner;
+import model.Filter.IncrementalFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+
+public class TestFilterPlanner {
+
+        private ExpenseTrackerModel model;
+
+        @Before
+        public void setup() {
+                model = new ExpenseTrackerModel();
+        }
+
+        // The positions that match, one transaction at a time
+        private BitSet check(IncrementalFilter filter, TransactionSnapshot transactions) {
+                BitSet positions = new BitSet();
+                for (int i = 0; i < transactions.size(); i++) {
+                        if (filter.matches(transactions.get(i))) {
+                                positions.set(i);
+                        }
+                }
+                return positions;
+        }
+
+        @Test
+        public void testAndIntersectsIndexes() {
+                // Setup: four categories spread over the same amounts from 0.25 to
+                // 999.00, so that an amount range of 90.00 is narrower than a
+                // category; the removals leave gaps in the slots
+                for (int dollars = 1; dollars < 1000; dollars++) {
+                        model.addTransaction(new Transaction(dollars, "food"));
+                        model.addTransaction(new Transaction(dollars - 0.25, "travel"));
+                        model.addTransaction(new Transaction(dollars - 0.5, "bills"));
+                        model.addTransaction(new Transaction(dollars - 0.75, "other"));
+                }
+                for (int i = model.getTransactionCount() - 1; i >= 0; i -= 7) {
+                        model.removeTransaction(model.getTransactionId(i));
+                }
+                TransactionSnapshot transactions = model.getTransactions();
+                AndFilter filter = new AndFilter(new CategoryFilter("food"), new AmountRangeFilter(10, 100));
+
+                // Call the unit under test
+                FilterPlan plan = FilterPlanner.plan(filter, transactions);
+
+                // Check the post-conditions: the narrower amount range drives, and
+                // the category bitmap from its index is intersected with it
+                String explained = plan.explain();
+                assertTrue(explained, explained.startsWith("AND"));
+                assertTrue(explained, explained.indexOf("INDEX amount") < explained.indexOf("INDEX category"));
+                assertEquals(check(filter, transactions), plan.execute());
+                assertEquals(check(filter, transactions), filter.matchingPositions(transactions));
+        }
+
+        @Test
+        public void testAndChecksCandidatesAgainstBroadPart() {
+                // Setup: one transaction for every amount from 1.00 to 999.00, so
+                // that almost every amount is in the broad range
+                for (int dollars = 1; dollars < 1000; dollars++) {
+                        model.addTransaction(new Transaction(dollars, "other"));
+                }
+                TransactionSnapshot transactions = model.getTransactions();
+                AndFilter filter = new AndFilter(new AmountRangeFilter(5, 1000), new AmountRangeFilter(10, 11));
+
+                // Call the unit under test
+                FilterPlan plan = FilterPlanner.plan(filter, transactions);
+
+                // Check the post-conditions
+                assertTrue(plan.explain(), plan.explain().contains("CHECK amount in [5.00, 1000.00]"));
+                assertTrue(plan.getEstimatedCost() < transactions.size() / 5);
+                assertEquals(check(filter, transactions), plan.execute());
+        }
+
+        @Test
+        public void testOrAndNotOnOldSnapshot() {
+                // Setup: an old snapshot has no indexes, so every part is scanned
+                model.addTransaction(new Transaction(5, "food"));
+                model.addTransaction(new Transaction(30, "travel"));
+                model.addTransaction(new Transaction(70, "food"));
+                model.addTransaction(new Transaction(120, "bills"));
+                TransactionSnapshot old = model.getTransactions();
+                model.addTransaction(new Transaction(10, "food"));
+                IncrementalFilter filter = new OrFilter(new NotFilter(new CategoryFilter("food")),
+                                new AmountRangeFilter(1, 50));
+
+                // Call the unit under test
+                String explained = FilterPlanner.explain(filter, old);
+
+                // Check the post-conditions: two scans cost more than one
+                assertTrue(explained, explained.startsWith("SCAN (NOT category = food OR amount in [1.00, 50.00])"));
+                assertEquals(check(filter, old), filter.matchingPositions(old));
+                assertEquals(check(filter, model.getTransactions()), filter.matchingPositions(model.getTransactions()));
+        }
+}
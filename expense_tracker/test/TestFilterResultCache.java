@@ -0,0 +1,80 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.FilterCacheStats;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.TransactionFilter;
+
+public class TestFilterResultCache {
+
+        private ExpenseTrackerModel model;
+
+        @Before
+        public void setup() {
+                model = new ExpenseTrackerModel();
+                model.addTransaction(new Transaction(10, "food"));
+                model.addTransaction(new Transaction(20, "bills"));
+                model.addTransaction(new Transaction(10, "Food"));
+        }
+
+        @Test
+        public void testFiltersHaveValueEquality() {
+                // Check the post-conditions
+                assertEquals(new CategoryFilter("food"), new CategoryFilter("FOOD"));
+                assertEquals(new CategoryFilter("food").hashCode(), new CategoryFilter("FOOD").hashCode());
+                assertNotEquals(new CategoryFilter("food"), new CategoryFilter("bills"));
+                assertEquals(new AmountFilter(10), new AmountFilter(10.0));
+                assertNotEquals(new AmountFilter(10), new AmountFilter(20));
+        }
+
+        @Test
+        public void testToggledFilterIsPatchedAndHit() {
+                // Setup
+                model.applyFilter(new CategoryFilter("food"));
+                model.applyFilter(new AmountFilter(20));
+                model.addTransaction(new Transaction(30, "food"));
+                model.removeTransaction(model.getTransactionId(0));
+
+                // Call the unit under test
+                model.applyFilter(new CategoryFilter("Food"));
+
+                // Check the post-conditions: the cached result followed the changes
+                assertEquals(List.of(1, 2), model.getMatchedFilterIndices());
+                FilterCacheStats stats = model.getFilterCacheStats();
+                assertEquals(1, stats.getHits());
+                assertEquals(2, stats.getMisses());
+                assertEquals(2, stats.getSize());
+        }
+
+        @Test
+        public void testEvictionAndInvalidation() {
+                // Setup
+                model.setFilterCacheCapacity(2);
+                TransactionFilter firstOnly = transactions -> new ArrayList<>(transactions.subList(0, 1));
+
+                // Call the unit under test
+                model.applyFilter(new AmountFilter(10));
+                model.applyFilter(new AmountFilter(20));
+                model.applyFilter(firstOnly);
+                model.addTransaction(new Transaction(40, "other"));
+
+                // Check the post-conditions: the oldest result was evicted, and the
+                // result of the lambda could not follow the new transaction
+                FilterCacheStats stats = model.getFilterCacheStats();
+                assertEquals(1, stats.getEvictions());
+                assertEquals(1, stats.getInvalidations());
+                assertEquals(1, stats.getSize());
+                assertArrayEquals(new int[] { 0 }, model.getMatchedFilterRows().toArray());
+        }
+}
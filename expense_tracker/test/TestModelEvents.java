@@ -0,0 +1,256 @@
+
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.ExpenseTrackerModelEvent;
+import model.ExpenseTrackerModelListener;
+import model.Transaction;
+
+public class TestModelEvents {
+
+        private ExpenseTrackerModel model;
+        private List<ExpenseTrackerModelEvent> events;
+
+        // Records every event, without overriding update
+        private class RecordingListener implements ExpenseTrackerModelListener {
+                public void update(ExpenseTrackerModel model) {
+                        fail();
+                }
+
+                @Override
+                public void modelChanged(ExpenseTrackerModelEvent event) {
+                        events.add(event);
+                }
+
+                private void fail() {
+                        throw new AssertionError("update should not be called");
+                }
+        }
+
+        @Before
+        public void setup() {
+                model = new ExpenseTrackerModel();
+                events = new ArrayList<>();
+                model.register(new RecordingListener());
+        }
+
+        @Test
+        public void testAddFiresRowsInserted() {
+                // Call the unit under test
+                model.addTransaction(new Transaction(10, "food"));
+                model.addTransactions(Arrays.asList(new Transaction(20, "food"), new Transaction(30, "bills")));
+
+                // Check the post-conditions
+                assertEquals(2, events.size());
+                ExpenseTrackerModelEvent.RowsInserted first = (ExpenseTrackerModelEvent.RowsInserted) events.get(0);
+                assertEquals(0, first.getFirstRow());
+                assertEquals(0, first.getLastRow());
+                ExpenseTrackerModelEvent.RowsInserted second = (ExpenseTrackerModelEvent.RowsInserted) events.get(1);
+                assertEquals(1, second.getFirstRow());
+                assertEquals(2, second.getLastRow());
+                assertFalse(second.isMatchesChanged());
+        }
+
+        @Test
+        public void testRemoveFiresRowsRemoved() {
+                // Setup
+                Transaction removed = new Transaction(20, "food");
+                model.addTransactions(Arrays.asList(new Transaction(10, "food"), removed, new Transaction(30, "bills")));
+                model.setMatchedFilterIndices(Arrays.asList(0, 1));
+                events.clear();
+
+                // Call the unit under test
+                model.removeTransaction(removed.getId());
+
+                // Check the post-conditions: the event has the old position and the
+                // matches were cleared
+                assertEquals(1, events.size());
+                ExpenseTrackerModelEvent.RowsRemoved event = (ExpenseTrackerModelEvent.RowsRemoved) events.get(0);
+                assertArrayEquals(new int[] { 1 }, event.getRows());
+                assertEquals(Arrays.asList(removed), event.getRemovedTransactions());
+                assertTrue(event.isMatchesChanged());
+        }
+
+        @Test
+        public void testDefaultAdapterCallsUpdate() {
+                // Setup: a listener that only implements update
+                int[] updates = { 0 };
+                model.register(m -> updates[0]++);
+
+                // Call the unit under test
+                model.addTransaction(new Transaction(10, "food"));
+                model.setMatchedFilterIndices(Arrays.asList(0));
+
+                // Check the post-conditions
+                assertEquals(2, updates[0]);
+                assertTrue(events.get(1) instanceof ExpenseTrackerModelEvent.FilterMatchesChanged);
+        }
+
+        @Test
+        public void testBatchFiresOneMergedEvent() {
+                // Setup
+                List<Transaction> initial = new ArrayList<>();
+                for (int i = 0; i < 6; i++) {
+                        initial.add(new Transaction(10 + i, "food"));
+                }
+                model.addTransactions(initial);
+                events.clear();
+
+                // Call the unit under test: nested batches of removals
+                model.batch(m -> {
+                        m.removeTransaction(initial.get(4).getId());
+                        m.batch(inner -> inner.removeTransaction(initial.get(1).getId()));
+                        m.removeTransaction(initial.get(2).getId());
+                        assertTrue(events.isEmpty());
+                });
+
+                // Check the post-conditions: one event with the rows before the batch
+                assertEquals(1, events.size());
+                ExpenseTrackerModelEvent.RowsRemoved event = (ExpenseTrackerModelEvent.RowsRemoved) events.get(0);
+                assertArrayEquals(new int[] { 1, 2, 4 }, event.getRows());
+                assertEquals(Arrays.asList(initial.get(1), initial.get(2), initial.get(4)),
+                                event.getRemovedTransactions());
+                assertEquals(Arrays.asList(initial.get(0), initial.get(3), initial.get(5)), model.getTransactions());
+        }
+
+        @Test
+        public void testBatchRollsBackOnException() {
+                // Setup
+                Transaction kept = new Transaction(10, "food");
+                model.addTransaction(kept);
+                model.setMatchedFilterIndices(Arrays.asList(0));
+                events.clear();
+
+                // Call the unit under test
+                try {
+                        model.batch(m -> {
+                                m.addTransaction(new Transaction(20, "bills"));
+                                m.removeTransaction(kept.getId());
+                                throw new IllegalStateException("statement does not balance");
+                        });
+                } catch (IllegalStateException e) {
+                        // expected
+                }
+
+                // Check the post-conditions: nothing changed and nothing was announced
+                assertTrue(events.isEmpty());
+                assertFalse(model.isInBatch());
+                assertEquals(Arrays.asList(kept), model.getTransactions());
+                assertEquals(Arrays.asList(0), model.getMatchedFilterIndices());
+                assertEquals(1000, model.getTransactions().sumAmountCents());
+
+                // The model keeps working after the rollback
+                model.removeTransaction(kept.getId());
+                assertEquals(0, model.getTransactionCount());
+        }
+
+        @Test
+        public void testInnerRollbackKeepsOuterChanges() {
+                // Call the unit under test
+                Transaction outer = new Transaction(10, "food");
+                model.beginBatch();
+                model.addTransaction(outer);
+                model.beginBatch();
+                model.addTransaction(new Transaction(20, "food"));
+                model.rollbackBatch();
+                model.addTransaction(new Transaction(30, "food"));
+                model.commitBatch();
+
+                // Check the post-conditions
+                assertEquals(2, model.getTransactionCount());
+                assertEquals(4000, model.getTransactions().sumAmountCents());
+                assertEquals(1, events.size());
+                ExpenseTrackerModelEvent.RowsInserted event = (ExpenseTrackerModelEvent.RowsInserted) events.get(0);
+                assertEquals(0, event.getFirstRow());
+                assertEquals(1, event.getLastRow());
+        }
+
+        @Test
+        public void testExecutorCoalescesPendingEvents() {
+                // Setup: an executor that runs the tasks only when asked to
+                List<Runnable> tasks = new ArrayList<>();
+                Executor executor = tasks::add;
+                model.setDispatchExecutor(executor);
+
+                // Call the unit under test
+                model.addTransaction(new Transaction(10, "food"));
+                model.addTransaction(new Transaction(20, "food"));
+                model.addTransaction(new Transaction(30, "bills"));
+
+                // Check the post-conditions: nothing was delivered yet, and a single
+                // task delivers one merged event
+                assertTrue(events.isEmpty());
+                assertEquals(1, tasks.size());
+                tasks.remove(0).run();
+                assertEquals(1, events.size());
+                ExpenseTrackerModelEvent.RowsInserted event = (ExpenseTrackerModelEvent.RowsInserted) events.get(0);
+                assertEquals(0, event.getFirstRow());
+                assertEquals(2, event.getLastRow());
+                assertEquals(3, event.getTransactions().size());
+
+                // The state attached to the event does not follow the model
+                model.addTransaction(new Transaction(40, "bills"));
+                assertEquals(3, event.getTransactions().size());
+                assertEquals(1, tasks.size());
+                tasks.remove(0).run();
+                assertEquals(2, events.size());
+                assertEquals(4, events.get(1).getTransactions().size());
+        }
+
+        @Test
+        public void testFailingListenerGoesToUncaughtExceptionHandler() {
+                // Setup: a listener that fails next to the recording one, and a
+                // handler that keeps what reaches it
+                List<Runnable> tasks = new ArrayList<>();
+                model.setDispatchExecutor(tasks::add);
+                model.register(new ExpenseTrackerModelListener() {
+                        public void update(ExpenseTrackerModel model) {
+                                throw new IllegalStateException("listener failed");
+                        }
+                });
+                List<Throwable> reported = new ArrayList<>();
+                Thread thread = Thread.currentThread();
+                Thread.UncaughtExceptionHandler previous = thread.getUncaughtExceptionHandler();
+                thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+
+                // Call the unit under test
+                model.addTransaction(new Transaction(10, "food"));
+                try {
+                        while (!tasks.isEmpty()) {
+                                tasks.remove(0).run();
+                        }
+                } finally {
+                        thread.setUncaughtExceptionHandler(previous);
+                }
+
+                // Check the post-conditions
+                assertEquals(1, reported.size());
+                assertEquals("listener failed", reported.get(0).getMessage());
+                assertEquals(1, events.size());
+        }
+
+        @Test
+        public void testSynchronousDispatchByDefault() {
+                // Setup
+                model.setDispatchExecutor(null);
+
+                // Call the unit under test
+                model.addTransaction(new Transaction(10, "food"));
+
+                // Check the post-conditions
+                assertEquals(1, events.size());
+                assertEquals(1, events.get(0).getTransactions().size());
+        }
+}
@@ -0,0 +1,101 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.QuantileSketch;
+import model.Transaction;
+
+public class TestQuantileSketch {
+
+        // The fraction of the values that are at most the given value
+        private static double exactRank(long[] sorted, long value) {
+                int count = 0;
+                while (count < sorted.length && sorted[count] <= value) {
+                        count++;
+                }
+                return (double) count / sorted.length;
+        }
+
+        @Test
+        public void testSketchStaysWithinErrorBound() {
+                // Setup: two shards of skewed amounts
+                Random random = new Random(25);
+                long[] values = new long[200000];
+                QuantileSketch first = new QuantileSketch();
+                QuantileSketch second = new QuantileSketch();
+                for (int i = 0; i < values.length; i++) {
+                        values[i] = (long) (100 * Math.exp(random.nextGaussian() * 2));
+                        (i % 2 == 0 ? first : second).update(values[i]);
+                }
+                Arrays.sort(values);
+
+                // Call the unit under test
+                first.merge(second);
+
+                // Check the post-conditions
+                assertEquals(values.length, first.getCount());
+                assertEquals(values[0], first.getQuantile(0));
+                assertEquals(values[values.length - 1], first.getQuantile(1));
+                assertTrue(first.getRetained() < 1000);
+                for (double fraction : new double[] { 0.01, 0.1, 0.5, 0.9, 0.99 }) {
+                        double rank = exactRank(values, first.getQuantile(fraction));
+                        assertEquals(fraction, rank, 0.02);
+                }
+        }
+
+        @Test
+        public void testModelQuantilesAfterRemovals() {
+                // Setup: few amounts, so that the sketch keeps all of them
+                ExpenseTrackerModel model = new ExpenseTrackerModel();
+                Transaction largest = new Transaction(500, "food");
+                for (int i = 1; i <= 9; i++) {
+                        model.addTransaction(new Transaction(i * 10, "food"));
+                }
+                model.addTransaction(largest);
+                model.addTransaction(new Transaction(1, "bills"));
+
+                // Call the unit under test
+                model.removeTransaction(largest.getId());
+                model.addTransaction(new Transaction(5, "FOOD"));
+
+                // Check the post-conditions: 5, 10, 20, ..., 90
+                assertEquals(40, model.getAmountQuantile("food", 0.5), 1e-9);
+                assertEquals(90, model.getAmountQuantile("food", 1), 1e-9);
+                assertEquals(5, model.getAmountQuantile("food", 0), 1e-9);
+                assertEquals(1, model.getAmountQuantile(null, 0), 1e-9);
+                assertEquals(11, model.getAmountSketch(null).getCount());
+                assertEquals(0, model.getAmountQuantile("travel", 0.5), 1e-9);
+        }
+
+        @Test
+        public void testModelSketchesMerge() {
+                // Setup
+                ExpenseTrackerModel january = new ExpenseTrackerModel();
+                ExpenseTrackerModel february = new ExpenseTrackerModel();
+                for (int i = 1; i <= 50; i++) {
+                        january.addTransaction(new Transaction(i, "travel"));
+                        february.addTransaction(new Transaction(50 + i, "travel"));
+                }
+
+                // Call the unit under test
+                QuantileSketch both = january.getAmountSketch("travel");
+                both.merge(february.getAmountSketch("travel"));
+
+                // Check the post-conditions: the sketch of the model does not change
+                assertEquals(100, both.getCount());
+                assertEquals(5000, both.getQuantile(0.5));
+                assertEquals(0.9, both.getRank(9000), 1e-9);
+                assertEquals(50, january.getAmountSketch("travel").getCount());
+
+                // A sketch merged with itself counts every value twice
+                both.merge(both);
+                assertEquals(200, both.getCount());
+                assertEquals(5000, both.getQuantile(0.5));
+        }
+}
@@ -0,0 +1,102 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.QueryFilter;
+
+public class TestQueryFilter {
+
+        // The positions that match the query, checked one transaction at a time
+        private BitSet expected(TransactionSnapshot transactions, String category, long minCents, long fromMillis) {
+                BitSet positions = new BitSet();
+                for (int i = 0; i < transactions.size(); i++) {
+                        Transaction t = transactions.get(i);
+                        if (t.getCategory().equals(category) && t.getAmountCents() >= minCents
+                                        && t.getTimestampMillis() >= fromMillis) {
+                                positions.set(i);
+                        }
+                }
+                return positions;
+        }
+
+        @Test
+        public void testQueryMatchesFilters() {
+                // Setup: three months of expenses around the new year, with
+                // amounts from 5.00 to 54.00
+                ExpenseTrackerModel model = new ExpenseTrackerModel();
+                String[] categories = { "food", "travel", "bills" };
+                long start = LocalDate.of(2025, 12, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                for (int i = 0; i < 3000; i++) {
+                        model.addTransaction(new Transaction(5 + (i * 13) % 50, categories[i % 3],
+                                        start + (i % 90) * 86400000L));
+                }
+                long newYear = LocalDate.of(2026, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                TransactionSnapshot old = model.getTransactions();
+                model.addTransaction(new Transaction(30, "food"));
+                TransactionSnapshot transactions = model.getTransactions();
+
+                // Call the unit under test
+                QueryFilter query = QueryFilter.parse("category=food and amount>=20 and date>=2026-01-01");
+
+                // Check the post-conditions: from the indexes, and from the compiled
+                // predicate on the old snapshot that has none
+                assertEquals(expected(transactions, "food", 2000, newYear), query.matchingPositions(transactions));
+                assertEquals(expected(old, "food", 2000, newYear), query.matchingPositions(old));
+                assertTrue(query.explain(old).contains("SCAN"));
+                List<Transaction> filtered = query.filter(List.copyOf(transactions));
+                assertEquals(expected(transactions, "food", 2000, newYear).cardinality(), filtered.size());
+        }
+
+        @Test
+        public void testQueriesAreCachedByNormalizedText() {
+                // Call the unit under test
+                QueryFilter query = QueryFilter.parse("Category = FOOD or not (amount<10.5)");
+
+                // Check the post-conditions
+                assertEquals("category = food or not ( amount < 10.5 )", query.getQuery());
+                assertSame(query, QueryFilter.parse("category=food OR NOT(amount < 10.5)"));
+                Transaction cheap = new Transaction(10.49, "travel");
+                Transaction food = new Transaction(5, "Food");
+                assertTrue(!query.matches(cheap) && query.matches(food)
+                                && query.matches(new Transaction(10.5, "bills")));
+        }
+
+        @Test
+        public void testQueryOnPlainList() {
+                // Setup: a list that is not a snapshot; in a fresh JVM no model has
+                // stored these categories yet, so neither has an ordinal
+                List<Transaction> transactions = List.of(new Transaction(10, "entertainment"),
+                                new Transaction(20, "other"));
+
+                // Call the unit under test
+                List<Transaction> filtered = QueryFilter.parse("category = other").filter(transactions);
+
+                // Check the post-conditions
+                assertEquals(1, filtered.size());
+                assertSame(transactions.get(1), filtered.get(0));
+        }
+
+        @Test
+        public void testInvalidQueryReportsPosition() {
+                // Call the unit under test
+                try {
+                        QueryFilter.parse("category=food and colour=red");
+                        fail("The query should be rejected");
+                } catch (IllegalArgumentException e) {
+                        // Check the post-conditions
+                        assertEquals("Invalid query at 19: unknown field 'colour'", e.getMessage());
+                }
+        }
+}
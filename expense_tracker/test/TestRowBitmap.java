@@ -0,0 +1,74 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.RowBitmap;
+
+public class TestRowBitmap {
+
+        // Checks the bitmap against the bits it was built from
+        private void checkSameRows(BitSet expected, RowBitmap rows) {
+                assertEquals(expected.cardinality(), rows.cardinality());
+                assertArrayEquals(expected.stream().toArray(), rows.toArray());
+                for (int row = 0; row < expected.length() + 70000; row += 7) {
+                        assertEquals(expected.get(row), rows.contains(row));
+                }
+        }
+
+        @Test
+        public void testAllContainerKinds() {
+                // Setup: a sparse group, a dense group and a group of long runs
+                Random random = new Random(3);
+                BitSet expected = new BitSet();
+                for (int i = 0; i < 100; i++) {
+                        expected.set(random.nextInt(65536));
+                }
+                for (int i = 0; i < 30000; i++) {
+                        expected.set(65536 + random.nextInt(65536));
+                }
+                expected.set(2 * 65536 + 10, 2 * 65536 + 20000);
+                expected.set(2 * 65536 + 30000, 2 * 65536 + 65536);
+
+                // Call the unit under test
+                RowBitmap rows = RowBitmap.fromBitSet(expected);
+
+                // Check the post-conditions: the runs take less room than a bitmap
+                checkSameRows(expected, rows);
+                assertTrue(rows.sizeInBytes() < 100 * 2 + 8192 + 100);
+                assertEquals(expected.nextSetBit(0), rows.first());
+                assertEquals(expected.length() - 1, rows.last());
+        }
+
+        @Test
+        public void testFromCollectionSortsAndRemovesDuplicates() {
+                // Call the unit under test
+                RowBitmap rows = RowBitmap.fromCollection(Arrays.asList(5, 1, 5, 70000));
+
+                // Check the post-conditions
+                assertEquals(Arrays.asList(1, 5, 70000), rows.toList());
+                assertFalse(rows.contains(2));
+                assertFalse(rows.contains(-1));
+                assertEquals(RowBitmap.fromSorted(new int[] { 1, 5, 70000 }, 3), rows);
+                assertTrue(RowBitmap.EMPTY.isEmpty());
+                assertEquals(-1, RowBitmap.EMPTY.last());
+        }
+
+        @Test
+        public void testFromSortedRejectsUnsortedRows() {
+                try {
+                        RowBitmap.fromSorted(new int[] { 1, 3, 2 }, 3);
+                        fail("Expected an IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                        assertEquals("The rows must be in strictly ascending order.", e.getMessage());
+                }
+        }
+}
@@ -0,0 +1,112 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountRangeFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+import model.Filter.IncrementalFilter;
+import model.Filter.TransactionFilter;
+
+public class TestTopK {
+
+        private ExpenseTrackerModel model;
+
+        @Before
+        public void setup() {
+                // Every category holds the same 250 amounts four times over, so
+                // that many amounts are equal, and a run of removals makes the
+                // positions and slots differ
+                model = new ExpenseTrackerModel();
+                for (int round = 0; round < 4; round++) {
+                        for (String category : new String[] { "food", "travel", "bills", "other" }) {
+                                for (int halves = 2; halves < 252; halves++) {
+                                        model.addTransaction(new Transaction(halves / 2.0, category));
+                                }
+                        }
+                }
+                for (int i = 0; i < 500; i++) {
+                        model.removeTransaction(model.getTransactionId(i * 5));
+                }
+        }
+
+        // The positions of the k largest matching amounts, from a full sort
+        private int[] sortAll(int k, IncrementalFilter filter) {
+                TransactionSnapshot transactions = model.getTransactions();
+                List<Integer> positions = new ArrayList<>();
+                for (int i = 0; i < transactions.size(); i++) {
+                        if (filter == null || filter.matches(transactions.get(i))) {
+                                positions.add(i);
+                        }
+                }
+                positions.sort(Comparator.comparingLong((Integer i) -> transactions.get(i).getAmountCents())
+                                .thenComparingInt(i -> i).reversed());
+                return positions.stream().limit(k).mapToInt(Integer::intValue).toArray();
+        }
+
+        @Test
+        public void testTopKFromIndex() {
+                // Call the unit under test
+                int[] all = model.topK(20, null);
+                int[] food = model.topK(20, new CategoryFilter("food"));
+
+                // Check the post-conditions
+                assertArrayEquals(sortAll(20, null), all);
+                assertArrayEquals(sortAll(20, new CategoryFilter("food")), food);
+                assertEquals(model.getTransactionCount(), model.topK(1000000, null).length);
+        }
+
+        @Test
+        public void testTopKOfFewMatches() {
+                // Setup: one of the 250 amounts, and a day without expenses
+                AmountRangeFilter rare = new AmountRangeFilter(50, 50);
+                DateRangeFilter empty = new DateRangeFilter(0, 86400000L);
+
+                // Call the unit under test
+                int[] fifties = model.topK(10, rare);
+                int[] none = model.topK(10, empty);
+
+                // Check the post-conditions
+                assertArrayEquals(sortAll(10, rare), fifties);
+                assertEquals(0, none.length);
+        }
+
+        @Test
+        public void testTopKScanAndParallelScan() {
+                // Setup: a filter that cannot test one transaction on its own
+                TransactionFilter bills = transactions -> new CategoryFilter("bills").filter(transactions);
+                ForkJoinPool pool = new ForkJoinPool(4);
+
+                // Call the unit under test
+                int[] scanned = model.topK(50, bills);
+                int[] parallel = model.topKParallel(50, new CategoryFilter("bills"), pool);
+
+                // Check the post-conditions
+                assertArrayEquals(sortAll(50, new CategoryFilter("bills")), scanned);
+                assertArrayEquals(sortAll(50, new CategoryFilter("bills")), parallel);
+                pool.shutdown();
+        }
+
+        @Test
+        public void testHighlightTopK() {
+                // Call the unit under test
+                model.highlightTopK(3, new CategoryFilter("travel"));
+
+                // Check the post-conditions: the rows are highlighted in list order
+                int[] expected = sortAll(3, new CategoryFilter("travel"));
+                Arrays.sort(expected);
+                assertArrayEquals(expected, model.getMatchedFilterRows().toArray());
+        }
+}
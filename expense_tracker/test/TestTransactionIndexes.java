@@ -0,0 +1,297 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.CategoryIndex;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountFilter;
+import model.Filter.AmountIndex;
+import model.Filter.AmountRangeFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+import model.Filter.TimeIndex;
+
+public class TestTransactionIndexes {
+
+        private static final String[] CATEGORIES = { "food", "travel", "bills", "entertainment", "other" };
+
+        private ExpenseTrackerModel model;
+        private Random random;
+        private List<Transaction> added;
+
+        @Before
+        public void setup() {
+                model = new ExpenseTrackerModel();
+                random = new Random(11);
+                added = new ArrayList<>();
+        }
+
+        // Adds and removes transactions at random, enough to compact the store
+        private void changeRandomly(int count) {
+                for (int i = 0; i < count; i++) {
+                        if (!added.isEmpty() && random.nextInt(5) < 2) {
+                                model.removeTransaction(added.remove(random.nextInt(added.size())).getId());
+                        } else {
+                                Transaction t = new Transaction(1 + random.nextInt(99900) / 100.0,
+                                                CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                                model.addTransaction(t);
+                                added.add(t);
+                        }
+                }
+        }
+
+        // The positions of the category, found by a scan of the snapshot
+        private int[] scanCategory(TransactionSnapshot transactions, String category) {
+                List<Integer> positions = new ArrayList<>();
+                for (int i = 0; i < transactions.size(); i++) {
+                        if (transactions.get(i).getCategory().equalsIgnoreCase(category)) {
+                                positions.add(i);
+                        }
+                }
+                return positions.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        @Test
+        public void testCategoryIndexMatchesScan() {
+                // Setup
+                changeRandomly(30000);
+                TransactionSnapshot transactions = model.getTransactions();
+
+                // Call the unit under test
+                CategoryIndex index = transactions.getIndex(CategoryIndex.class);
+
+                // Check the post-conditions
+                assertNotNull(index);
+                for (String category : CATEGORIES) {
+                        int[] expected = scanCategory(transactions, category);
+                        assertArrayEquals(expected, index.positionsOf(category.toUpperCase(), transactions));
+                        assertEquals(expected.length, index.countOf(category));
+                }
+                assertEquals(0, index.positionsOf("unknown", transactions).length);
+        }
+
+        @Test
+        public void testCategoryIndexAfterRollback() {
+                // Setup
+                changeRandomly(5000);
+                TransactionSnapshot before = model.getTransactions();
+
+                // Call the unit under test
+                model.beginBatch();
+                changeRandomly(5000);
+                model.rollbackBatch();
+
+                // Check the post-conditions
+                TransactionSnapshot transactions = model.getTransactions();
+                CategoryIndex index = transactions.getIndex(CategoryIndex.class);
+                for (String category : CATEGORIES) {
+                        assertArrayEquals(scanCategory(before, category), index.positionsOf(category, transactions));
+                }
+        }
+
+        @Test
+        public void testOldSnapshotFallsBackToScan() {
+                // Setup
+                changeRandomly(2000);
+                TransactionSnapshot old = model.getTransactions();
+                changeRandomly(100);
+
+                // Call the unit under test
+                List<Transaction> filtered = new CategoryFilter("food").filter(old);
+
+                // Check the post-conditions: the index no longer describes the old
+                // snapshot, so the filter scanned it
+                assertNull(old.getIndex(CategoryIndex.class));
+                int[] expected = scanCategory(old, "food");
+                assertEquals(expected.length, filtered.size());
+                for (int i = 0; i < expected.length; i++) {
+                        assertEquals(old.get(expected[i]), filtered.get(i));
+                }
+        }
+
+        // The positions with an amount in the range, found by a scan of the snapshot
+        private int[] scanAmounts(TransactionSnapshot transactions, long minCents, long maxCents) {
+                List<Integer> positions = new ArrayList<>();
+                for (int i = 0; i < transactions.size(); i++) {
+                        long cents = transactions.get(i).getAmountCents();
+                        if (cents >= minCents && cents <= maxCents) {
+                                positions.add(i);
+                        }
+                }
+                return positions.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        @Test
+        public void testAmountIndexMatchesScan() {
+                // Setup
+                changeRandomly(30000);
+                TransactionSnapshot transactions = model.getTransactions();
+                AmountIndex index = transactions.getIndex(AmountIndex.class);
+
+                // Call the unit under test and check the post-conditions
+                assertNotNull(index);
+                assertArrayEquals(scanAmounts(transactions, 50000, 70000),
+                                index.positionsInRange(50000, 70000, transactions));
+                assertArrayEquals(scanAmounts(transactions, 0, Long.MAX_VALUE),
+                                index.positionsInRange(0, Long.MAX_VALUE, transactions));
+                long amount = transactions.get(transactions.size() / 2).getAmountCents();
+                assertArrayEquals(scanAmounts(transactions, amount, amount), index.positionsOf(amount, transactions));
+                assertArrayEquals(scanAmounts(transactions, amount - 250, amount + 250),
+                                index.positionsNear(amount, 250, transactions));
+                assertEquals(0, index.positionsInRange(70000, 50000, transactions).length);
+        }
+
+        @Test
+        public void testAmountRangeFilter() {
+                // Setup
+                Transaction low = new Transaction(100, "food");
+                Transaction high = new Transaction(600, "bills");
+                Transaction highest = new Transaction(999.99, "travel");
+                model.addTransaction(low);
+                model.addTransaction(high);
+                model.addTransaction(highest);
+                model.addTransaction(new Transaction(500, "other"));
+
+                // Call the unit under test
+                List<Transaction> overFiveHundred = AmountRangeFilter.atLeast(500.01).filter(model.getTransactions());
+                List<Transaction> nearHundred = AmountRangeFilter.within(100.5, 0.5).filter(model.getTransactions());
+                List<Transaction> exact = new AmountFilter(600).filter(model.getTransactions());
+
+                // Check the post-conditions
+                assertEquals(2, overFiveHundred.size());
+                assertTrue(overFiveHundred.contains(high) && overFiveHundred.contains(highest));
+                assertEquals(1, nearHundred.size());
+                assertEquals(low, nearHundred.get(0));
+                assertEquals(1, exact.size());
+                assertEquals(high, exact.get(0));
+        }
+
+        @Test
+        public void testAmountRangeFilterRejectsInvalidRange() {
+                try {
+                        new AmountRangeFilter(600, 500);
+                        fail("Expected an IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                        assertEquals("Invalid amount range filter", e.getMessage());
+                }
+        }
+
+        @Test
+        public void testTimeIndexWithImportedTransactions() {
+                // Setup: a day per transaction, with every tenth one imported from
+                // earlier, and some removals
+                long day = 24L * 60 * 60 * 1000;
+                for (int i = 0; i < 5000; i++) {
+                        long timestamp = (i % 10 == 9) ? random.nextInt(i) * day : i * day;
+                        Transaction t = new Transaction(10, CATEGORIES[i % CATEGORIES.length], timestamp);
+                        model.addTransaction(t);
+                        added.add(t);
+                        if (i % 7 == 0) {
+                                model.removeTransaction(added.remove(random.nextInt(added.size())).getId());
+                        }
+                }
+                TransactionSnapshot transactions = model.getTransactions();
+
+                // Call the unit under test
+                int[] positions = transactions.getIndex(TimeIndex.class).positionsInRange(1000 * day, 1030 * day,
+                                transactions);
+
+                // Check the post-conditions against a scan
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < transactions.size(); i++) {
+                        long timestamp = transactions.get(i).getTimestampMillis();
+                        if (timestamp >= 1000 * day && timestamp < 1030 * day) {
+                                expected.add(i);
+                        }
+                }
+                assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), positions);
+        }
+
+        @Test
+        public void testDateRangeFilter() {
+                // Setup
+                Transaction january = new Transaction(10, "food", 1704067200000L);
+                Transaction february = new Transaction(20, "food", 1706745600000L);
+                model.addTransaction(february);
+                model.addTransaction(january);
+
+                // Call the unit under test
+                List<Transaction> filtered = new DateRangeFilter(1704067200000L, 1706745600000L)
+                                .filter(model.getTransactions());
+
+                // Check the post-conditions: the end of the range is exclusive
+                assertEquals(1, filtered.size());
+                assertEquals(january, filtered.get(0));
+        }
+
+        @Test
+        public void testActiveFilterFollowsChanges() {
+                // Setup
+                changeRandomly(3000);
+                model.applyFilter(new CategoryFilter("food"));
+
+                // Call the unit under test: the changes compact the store as well
+                changeRandomly(12000);
+
+                // Check the post-conditions: the matches are those of the filter
+                // applied again
+                TransactionSnapshot transactions = model.getTransactions();
+                assertArrayEquals(scanCategory(transactions, "food"), model.getMatchedFilterRows().toArray());
+        }
+
+        @Test
+        public void testActiveFilterAfterRollback() {
+                // Setup
+                changeRandomly(2000);
+                model.applyFilter(new AmountRangeFilter(100, 500));
+                List<Integer> before = model.getMatchedFilterIndices();
+
+                // Call the unit under test
+                model.beginBatch();
+                changeRandomly(2000);
+                model.rollbackBatch();
+
+                // Check the post-conditions
+                assertEquals(before, model.getMatchedFilterIndices());
+                changeRandomly(500);
+                assertArrayEquals(scanAmounts(model.getTransactions(), 10000, 50000),
+                                model.getMatchedFilterRows().toArray());
+        }
+
+        @Test
+        public void testNonIncrementalFilterIsAppliedAgain() {
+                // Setup: a filter that can only judge all transactions at once
+                model.addTransaction(new Transaction(30, "food"));
+                model.addTransaction(new Transaction(10, "bills"));
+                model.applyFilter(transactions -> {
+                        List<Transaction> largest = new ArrayList<>();
+                        for (Transaction t : transactions) {
+                                if (largest.isEmpty() || t.getAmountCents() > largest.get(0).getAmountCents()) {
+                                        largest.clear();
+                                        largest.add(t);
+                                }
+                        }
+                        return largest;
+                });
+                assertEquals(List.of(0), model.getMatchedFilterIndices());
+
+                // Call the unit under test
+                model.addTransaction(new Transaction(50, "travel"));
+
+                // Check the post-conditions
+                assertEquals(List.of(2), model.getMatchedFilterIndices());
+        }
+}
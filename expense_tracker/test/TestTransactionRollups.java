@@ -0,0 +1,136 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Rollup;
+import model.RollupPeriod;
+import model.Transaction;
+
+public class TestTransactionRollups {
+
+        private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+        private ExpenseTrackerModel model;
+
+        @Before
+        public void setup() {
+                model = new ExpenseTrackerModel();
+        }
+
+        // A transaction at noon of the given day, in the time zone of the model
+        private static Transaction on(LocalDate day, double amount, String category) {
+                long millis = day.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                return new Transaction(amount, category, millis);
+        }
+
+        @Test
+        public void testRollupsFollowAddAndRemove() {
+                // Setup: Monday 2024-01-29 to Thursday 2024-02-01
+                Transaction removed = on(LocalDate.of(2024, 1, 30), 40, "food");
+                model.addTransaction(on(LocalDate.of(2024, 1, 29), 10, "food"));
+                model.addTransaction(removed);
+                model.addTransaction(on(LocalDate.of(2024, 1, 31), 2.5, "Food"));
+                model.addTransaction(on(LocalDate.of(2024, 2, 1), 100, "bills"));
+
+                // Call the unit under test
+                model.removeTransaction(removed.getId());
+                List<Rollup> days = model.getRollups(RollupPeriod.DAY, "food", LocalDate.of(2024, 1, 29),
+                                LocalDate.of(2024, 2, 1));
+                Rollup week = model.getRollup(RollupPeriod.WEEK, null, LocalDate.of(2024, 2, 1));
+                List<Rollup> months = model.getRollups(RollupPeriod.MONTH, "FOOD", LocalDate.of(2024, 1, 15),
+                                LocalDate.of(2024, 2, 15));
+
+                // Check the post-conditions
+                assertEquals(4, days.size());
+                assertEquals(1000, days.get(0).getTotalCents());
+                assertEquals(0, days.get(1).getCount());
+                assertEquals(250, days.get(2).getTotalCents());
+                assertEquals(0, days.get(3).getCount());
+                assertEquals(LocalDate.of(2024, 1, 29), week.getFirstDay());
+                assertEquals(LocalDate.of(2024, 2, 4), week.getLastDay());
+                assertEquals(3, week.getCount());
+                assertEquals(11250, week.getTotalCents());
+                assertEquals(2, months.size());
+                assertEquals(LocalDate.of(2024, 1, 31), months.get(0).getLastDay());
+                assertEquals(2, months.get(0).getCount());
+                assertEquals(0, months.get(1).getCount());
+                assertEquals(0, model.getRollup(RollupPeriod.MONTH, "travel", START).getCount());
+        }
+
+        @Test
+        public void testRollupsMatchScanAfterRandomChanges() {
+                // Setup
+                Random random = new Random(24);
+                String[] categories = { "food", "travel", "bills" };
+                List<Transaction> added = new ArrayList<>();
+                List<LocalDate> dates = new ArrayList<>();
+
+                // Call the unit under test
+                for (int i = 0; i < 2000; i++) {
+                        LocalDate day = START.plusDays(random.nextInt(120));
+                        Transaction t = on(day, 1 + random.nextInt(10000) / 100.0,
+                                        categories[random.nextInt(categories.length)]);
+                        model.addTransaction(t);
+                        added.add(t);
+                        dates.add(day);
+                        if (random.nextInt(4) == 0) {
+                                int index = random.nextInt(added.size());
+                                model.removeTransaction(added.remove(index).getId());
+                                dates.remove(index);
+                        }
+                }
+
+                // Check the post-conditions against a scan of the transactions
+                LocalDate lastDay = START.plusDays(75);
+                for (String category : new String[] { null, "travel" }) {
+                        for (int days : new int[] { 7, 30 }) {
+                                long total = 0;
+                                int count = 0;
+                                for (int i = 0; i < added.size(); i++) {
+                                        boolean inCategory = category == null
+                                                        || added.get(i).getCategory().equals(category);
+                                        if (inCategory && !dates.get(i).isAfter(lastDay)
+                                                        && dates.get(i).isAfter(lastDay.minusDays(days))) {
+                                                total += added.get(i).getAmountCents();
+                                                count++;
+                                        }
+                                }
+                                Rollup window = model.getTrailingWindow(category, lastDay, days);
+                                assertEquals(count, window.getCount());
+                                assertEquals(total, window.getTotalCents());
+                        }
+                        long monthsTotal = 0;
+                        for (Rollup month : model.getRollups(RollupPeriod.MONTH, category, START,
+                                        START.plusDays(119))) {
+                                monthsTotal += month.getTotalCents();
+                        }
+                        assertEquals(category == null ? model.getSummary().getTotalCents()
+                                        : model.getSummary().getCategory(category).getTotalCents(), monthsTotal);
+                }
+        }
+
+        @Test
+        public void testRollupsAfterRollback() {
+                // Setup
+                model.addTransaction(on(START, 10, "food"));
+
+                // Call the unit under test
+                model.beginBatch();
+                model.addTransaction(on(START, 20, "food"));
+                model.rollbackBatch();
+
+                // Check the post-conditions
+                Rollup day = model.getRollup(RollupPeriod.DAY, "food", START);
+                assertEquals(1, day.getCount());
+                assertEquals(1000, day.getTotalCents());
+        }
+}
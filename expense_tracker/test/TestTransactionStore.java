@@ -0,0 +1,455 @@
+
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Money;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountFilter;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+import model.Filter.IncrementalFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+import model.Filter.ParallelFilter;
+import model.Filter.QueryFilter;
+import model.Filter.TransactionFilter;
+
+public class TestTransactionStore {
+
+        private ExpenseTrackerModel model;
+
+        @Before
+        public void setup() {
+                // These tests only use the Model, so they do not need a display
+                model = new ExpenseTrackerModel();
+        }
+
+        private void addTransactions(int count) {
+                String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+                for (int i = 0; i < count; i++) {
+                        model.addTransaction(new Transaction(1 + (i % 100), categories[i % categories.length]));
+                }
+        }
+
+        @Test
+        public void testSnapshotColumnsMatchTransactions() {
+                // Setup: more transactions than fit in one chunk
+                addTransactions(10000);
+
+                // Call the unit under test
+                TransactionSnapshot snapshot = model.getTransactions();
+
+                // Check the post-conditions
+                assertEquals(10000, snapshot.size());
+                double expectedTotal = 0;
+                for (int i = 0; i < snapshot.size(); i++) {
+                        Transaction t = snapshot.get(i);
+                        assertEquals(t.getAmount(), snapshot.amountAt(i), 0.0);
+                        expectedTotal += t.getAmount();
+                }
+                assertEquals(expectedTotal, snapshot.sumAmounts(), 0.01);
+        }
+
+        @Test
+        public void testRemoveAcrossChunkBoundary() {
+                // Setup
+                addTransactions(9000);
+                Transaction removed = model.getTransactions().get(100);
+                Transaction following = model.getTransactions().get(101);
+                Transaction carried = model.getTransactions().get(4096);
+                Transaction last = model.getTransactions().get(8999);
+
+                // Call the unit under test
+                model.removeTransaction(removed);
+
+                // Check the post-conditions: the following rows moved one position down
+                TransactionSnapshot snapshot = model.getTransactions();
+                assertEquals(8999, snapshot.size());
+                assertSame(following, snapshot.get(100));
+                assertSame(carried, snapshot.get(4095));
+                assertSame(last, snapshot.get(8998));
+                assertEquals(carried.getAmount(), snapshot.amountAt(4095), 0.0);
+        }
+
+        @Test
+        public void testSnapshotIsNotAffectedByLaterChanges() {
+                // Setup
+                addTransactions(10);
+                TransactionSnapshot before = model.getTransactions();
+
+                // Call the unit under test
+                model.removeTransaction(before.get(0));
+                model.addTransaction(new Transaction(5, "food"));
+
+                // Check the post-conditions
+                assertEquals(10, before.size());
+                assertEquals(1, before.amountAt(0), 0.0);
+                assertEquals(10, model.getTransactions().size());
+        }
+
+        @Test
+        public void testTimestampIsFormattedLazily() throws ParseException {
+                // Setup
+                long before = System.currentTimeMillis();
+                Transaction t = new Transaction(50, "food");
+                model.addTransaction(t);
+
+                // Check the post-conditions: the instant is kept and the string
+                // still has the old format
+                assertTrue(t.getTimestampMillis() >= before);
+                assertEquals(t.getTimestampMillis(), model.getTransactions().timestampAt(0));
+                Date parsed = Transaction.dateFormatter.parse(t.getTimestamp());
+                assertEquals(t.getTimestampMillis() / 60000, parsed.getTime() / 60000);
+                assertEquals(t.getTimestamp(), Transaction.formatTimestamp(t.getTimestampMillis()));
+        }
+
+        @Test
+        public void testFiltersScanColumns() {
+                // Setup
+                addTransactions(5000);
+                model.addTransaction(new Transaction(999, "Food"));
+
+                // Call the unit under test
+                List<Transaction> food = new CategoryFilter("FOOD").filter(model.getTransactions());
+                List<Transaction> amount = new AmountFilter(999).filter(model.getTransactions());
+
+                // Check the post-conditions
+                assertEquals(1001, food.size());
+                for (Transaction t : food) {
+                        assertEquals("food", t.getCategory().toLowerCase());
+                }
+                assertEquals(1, amount.size());
+                assertEquals("Food", amount.get(0).getCategory());
+        }
+
+        @Test
+        public void testAmountsAreExactCents() {
+                // Setup: amounts that are not exact in binary floating point
+                for (int i = 0; i < 10; i++) {
+                        model.addTransaction(new Transaction(0.1, "food"));
+                }
+                model.addTransaction(new Transaction(0.1 + 0.2, "bills"));
+
+                // Check the post-conditions: the total is exact and the amount
+                // filter compares cents
+                assertEquals(130, model.getTransactions().sumAmountCents());
+                assertEquals(30, model.getTransactions().get(10).getAmountCents());
+                assertEquals(1, new AmountFilter(0.3).filter(model.getTransactions()).size());
+                assertEquals("1.30", Money.format(model.getTransactions().sumAmountCents()));
+                assertEquals("-0.05", Money.format(-5));
+                assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        }
+
+        @Test
+        public void testRejectedAmountTakesNoId() {
+                // Setup
+                Transaction first = new Transaction(1, "food");
+
+                // Call the unit under test: an amount that rounds to zero cents
+                try {
+                        new Transaction(0.001, "food");
+                        fail("Expected an IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                        // expected
+                }
+
+                // Check the post-conditions: the ids stay consecutive
+                assertEquals(first.getId() + 1, new Transaction(2, "food").getId());
+        }
+
+        @Test
+        public void testRemoveByIdMatchesListSemantics() {
+                // Setup: a reference list that is changed the same way as the model
+                List<Transaction> expected = new ArrayList<>();
+                Random random = new Random(520);
+                for (int i = 0; i < 20000; i++) {
+                        Transaction t = new Transaction(1 + random.nextInt(999), "food");
+                        model.addTransaction(t);
+                        expected.add(t);
+                }
+
+                // Call the unit under test: remove most rows, which also compacts the store
+                while (expected.size() > 3000) {
+                        int position = random.nextInt(expected.size());
+                        Transaction removed = expected.remove(position);
+                        assertEquals(removed.getId(), model.getTransactionId(position));
+                        assertTrue(model.removeTransaction(removed.getId()));
+                }
+
+                // Check the post-conditions
+                assertFalse(model.removeTransaction(expected.get(0).getId() - 1));
+                TransactionSnapshot snapshot = model.getTransactions();
+                assertEquals(expected, snapshot);
+                long expectedCents = 0;
+                TransactionSnapshot.Cursor cursor = snapshot.cursor();
+                for (int i = 0; i < expected.size(); i++) {
+                        assertTrue(cursor.next());
+                        assertEquals(i, cursor.position());
+                        assertSame(expected.get(i), cursor.transaction());
+                        assertEquals(expected.get(i).getAmountCents(), snapshot.amountCentsAt(i));
+                        expectedCents += expected.get(i).getAmountCents();
+                }
+                assertFalse(cursor.next());
+                assertEquals(expectedCents, snapshot.sumAmountCents());
+        }
+
+        @Test
+        public void testTransactionIdsIncrease() {
+                Transaction first = new Transaction(10, "food");
+                Transaction second = new Transaction(10, "food");
+                assertTrue(second.getId() > first.getId());
+        }
+
+        @Test
+        public void testSnapshotsShareStorage() {
+                // Setup
+                addTransactions(9000);
+                TransactionSnapshot first = model.getTransactions();
+
+                // Check that an unchanged model hands out the same snapshot
+                assertSame(first, model.getTransactions());
+                long firstVersion = model.getVersion();
+
+                // Call the unit under test: change the model after the snapshot
+                Transaction removed = first.get(5000);
+                model.removeTransaction(removed.getId());
+                model.addTransaction(new Transaction(7, "travel"));
+                TransactionSnapshot second = model.getTransactions();
+
+                // Check the post-conditions: each snapshot keeps its own view
+                assertTrue(model.getVersion() > firstVersion);
+                assertEquals(firstVersion, first.getVersion());
+                assertEquals(9000, first.size());
+                assertSame(removed, first.get(5000));
+                assertEquals(9000, second.size());
+                assertEquals(700, second.amountCentsAt(8999));
+                assertEquals(first.sumAmountCents() - removed.getAmountCents() + 700, second.sumAmountCents());
+
+                // A range cursor starts at the requested position
+                TransactionSnapshot.Cursor cursor = second.cursor(4999, 5001);
+                assertTrue(cursor.next());
+                assertSame(second.get(4999), cursor.transaction());
+                assertTrue(cursor.next());
+                assertSame(first.get(5001), cursor.transaction());
+                assertFalse(cursor.next());
+                assertSame(first.get(5001), second.subList(4999, 5001).get(1));
+        }
+
+        @Test
+        public void testBulkAddNotifiesOnce() {
+                // Setup
+                int[] updates = { 0 };
+                model.register(m -> updates[0]++);
+                List<Transaction> batch = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                        batch.add(new Transaction(1 + i % 50, "bills"));
+                }
+
+                // Call the unit under test
+                model.addTransactions(batch);
+
+                // Check the post-conditions
+                assertEquals(1, updates[0]);
+                assertEquals(batch, model.getTransactions());
+
+                // A batch with a transaction that is already in the model adds nothing
+                List<Transaction> invalid = new ArrayList<>();
+                invalid.add(new Transaction(5, "food"));
+                invalid.add(batch.get(0));
+                try {
+                        model.addTransactions(invalid);
+                        fail("Expected an IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                        // expected
+                }
+                assertEquals(1000, model.getTransactionCount());
+                assertEquals(1, updates[0]);
+        }
+
+        @Test
+        public void testMatchingPositionsOfListAndSnapshot() {
+                // Setup
+                addTransactions(10000);
+                TransactionSnapshot snapshot = model.getTransactions();
+                List<Transaction> list = new ArrayList<>(snapshot);
+                CategoryFilter filter = new CategoryFilter("travel");
+
+                // Call the unit under test
+                BitSet fromSnapshot = filter.matchingPositions(snapshot);
+                BitSet fromList = filter.matchingPositions(list);
+
+                // Check the post-conditions: every fifth transaction is travel
+                assertEquals(2000, fromSnapshot.cardinality());
+                assertEquals(fromSnapshot, fromList);
+                for (int i = fromSnapshot.nextSetBit(0); i >= 0; i = fromSnapshot.nextSetBit(i + 1)) {
+                        assertEquals("travel", snapshot.get(i).getCategory());
+                }
+        }
+
+        @Test
+        public void testDefaultMatchingPositionsBridgesFilter() {
+                // Setup: a filter that only implements filter(List), in reverse order
+                addTransactions(10);
+                TransactionSnapshot snapshot = model.getTransactions();
+                TransactionFilter lastAndFirst = transactions -> Arrays.asList(transactions.get(9),
+                                transactions.get(0));
+
+                // Call the unit under test
+                BitSet positions = lastAndFirst.matchingPositions(snapshot);
+
+                // Check the post-conditions
+                assertEquals(2, positions.cardinality());
+                assertTrue(positions.get(0));
+                assertTrue(positions.get(9));
+        }
+
+        @Test
+        public void testSpliteratorSplitsAtWordBoundaries() {
+                // Setup
+                addTransactions(10000);
+                TransactionSnapshot snapshot = model.getTransactions();
+
+                // Call the unit under test
+                TransactionSnapshot.RangeSpliterator suffix = snapshot.spliterator();
+                TransactionSnapshot.RangeSpliterator prefix = suffix.trySplit();
+
+                // Check the post-conditions: the halves cover the snapshot in order
+                assertEquals(0, prefix.fromPosition());
+                assertEquals(0, prefix.toPosition() % 64);
+                assertEquals(prefix.toPosition(), suffix.fromPosition());
+                assertEquals(10000, suffix.toPosition());
+                List<Transaction> walked = new ArrayList<>();
+                prefix.forEachRemaining(walked::add);
+                suffix.forEachRemaining(walked::add);
+                assertEquals(snapshot, walked);
+                assertEquals(10000, snapshot.parallelStream().count());
+                // Splitting down leaves a part of at most 1000 positions at the end
+                TransactionSnapshot.RangeSpliterator rest = snapshot.spliterator();
+                List<TransactionSnapshot.RangeSpliterator> parts = rest.splitDown(1000);
+                assertEquals(0, parts.get(0).fromPosition());
+                assertEquals(parts.get(parts.size() - 1).toPosition(), rest.fromPosition());
+                assertTrue(rest.estimateSize() <= 1000);
+        }
+
+        @Test
+        public void testParallelFilterMatchesSequential() {
+                // Setup: an old snapshot with removals, which has to be scanned
+                addTransactions(60000);
+                for (int i = 0; i < 5000; i++) {
+                        model.removeTransaction(model.getTransactionId(i * 7));
+                }
+                TransactionSnapshot snapshot = model.getTransactions();
+                model.addTransaction(new Transaction(5, "food"));
+                ForkJoinPool pool = new ForkJoinPool(4);
+
+                // Call the unit under test
+                BitSet parallel = new ParallelFilter(new CategoryFilter("food"), pool, 0).matchingPositions(snapshot);
+
+                // Check the post-conditions
+                assertEquals(new CategoryFilter("food").matchingPositions(snapshot), parallel);
+                assertEquals(new AmountFilter(5).filter(snapshot),
+                                new ParallelFilter(new AmountFilter(5), pool, 0).filter(snapshot));
+                // The parts read the columns; the result is the same as matches
+                IncrementalFilter composite = new OrFilter(
+                                new AndFilter(new CategoryFilter("travel"), new AmountRangeFilter(100, 500)),
+                                new NotFilter(new DateRangeFilter(0, System.currentTimeMillis())));
+                BitSet expected = new BitSet();
+                for (int i = 0; i < snapshot.size(); i++) {
+                        expected.set(i, composite.matches(snapshot.get(i)));
+                }
+                assertEquals(expected, new ParallelFilter(composite, pool, 0).matchingPositions(snapshot));
+                pool.shutdown();
+        }
+
+        @Test
+        public void testAmountColumnScanMatchesTransactions() {
+                // Setup: removals, and an old snapshot that is not indexed anymore
+                addTransactions(10000);
+                for (int i = 0; i < 1000; i++) {
+                        model.removeTransaction(model.getTransactionId(i * 3));
+                }
+                TransactionSnapshot snapshot = model.getTransactions();
+                model.addTransaction(new Transaction(42, "food"));
+
+                // Call the unit under test
+                BitSet positions = snapshot.positionsWithAmountBetween(4000, 4500);
+                long totalCents = snapshot.sumAmountCents();
+
+                // Check the post-conditions against the transactions
+                BitSet expected = new BitSet();
+                long expectedTotal = 0;
+                for (int i = 0; i < snapshot.size(); i++) {
+                        long cents = snapshot.get(i).getAmountCents();
+                        if (cents >= 4000 && cents <= 4500) {
+                                expected.set(i);
+                        }
+                        expectedTotal += cents;
+                }
+                assertEquals(expected, positions);
+                assertEquals(expectedTotal, totalCents);
+                assertEquals(expected, new AmountRangeFilter(40, 45).matchingPositions(snapshot));
+        }
+
+        @Test
+        public void testStreamStopsAtTheAnswer() {
+                // Setup: a filter that only implements matches, and counts its calls
+                addTransactions(10000);
+                int[] tested = new int[1];
+                IncrementalFilter travel = t -> {
+                        tested[0]++;
+                        return t.getCategory().equals("travel");
+                };
+                TransactionSnapshot snapshot = model.getTransactions();
+
+                // Call the unit under test
+                boolean any = travel.anyMatch(snapshot);
+                int testedForAny = tested[0];
+                List<Transaction> firstTwo = travel.firstN(snapshot, 2);
+
+                // Check the post-conditions: the second transaction is the first
+                // travel transaction, and the seventh the second one
+                assertTrue(any);
+                assertEquals(2, testedForAny);
+                assertEquals(List.of(snapshot.get(1), snapshot.get(6)), firstTwo);
+                assertEquals(2 + 7, tested[0]);
+                assertEquals(2000, travel.count(snapshot));
+                assertEquals(travel.filter(snapshot), new CategoryFilter("travel").filter(snapshot));
+        }
+
+        @Test
+        public void testQueryStreamOnSnapshot() {
+                // Setup
+                addTransactions(10000);
+                TransactionSnapshot snapshot = model.getTransactions();
+                QueryFilter query = QueryFilter.parse("category=bills and amount>=50");
+
+                // Call the unit under test
+                List<Transaction> firstThree = query.firstN(snapshot, 3);
+
+                // Check the post-conditions
+                assertEquals(query.filter(snapshot).subList(0, 3), firstThree);
+                assertEquals(query.filter(snapshot).size(), query.count(snapshot));
+                assertEquals(2000, new CategoryFilter("bills").count(snapshot));
+                assertFalse(QueryFilter.parse("amount>1000").anyMatch(snapshot));
+        }
+}
@@ -0,0 +1,113 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.TransactionSummary;
+
+public class TestTransactionSummary {
+
+        private ExpenseTrackerModel model;
+
+        @Before
+        public void setup() {
+                model = new ExpenseTrackerModel();
+        }
+
+        @Test
+        public void testSummaryFollowsAddAndRemove() {
+                // Setup
+                Transaction cheapest = new Transaction(5, "food");
+                model.addTransaction(cheapest);
+                model.addTransaction(new Transaction(20.25, "food"));
+                model.addTransaction(new Transaction(7.5, "Food"));
+                model.addTransaction(new Transaction(100, "bills"));
+
+                // Call the unit under test
+                model.removeTransaction(cheapest.getId());
+                TransactionSummary summary = model.getSummary();
+
+                // Check the post-conditions: the minimum moved to the next amount
+                assertEquals(3, summary.getCount());
+                assertEquals(12775, summary.getTotalCents());
+                assertEquals(750, summary.getOverall().getMinCents());
+                assertEquals(10000, summary.getOverall().getMaxCents());
+                TransactionSummary.Aggregate food = summary.getCategory("FOOD");
+                assertEquals(2, food.getCount());
+                assertEquals(2775, food.getTotalCents());
+                assertEquals(750, food.getMinCents());
+                assertEquals(2025, food.getMaxCents());
+                assertEquals(13.875, food.getMean(), 1e-9);
+                assertEquals(2, summary.getCategories().size());
+                assertEquals(0, summary.getCategory("travel").getCount());
+        }
+
+        @Test
+        public void testSummaryMatchesScanAfterRandomChanges() {
+                // Setup
+                Random random = new Random(7);
+                String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+                List<Transaction> added = new ArrayList<>();
+
+                // Call the unit under test
+                for (int i = 0; i < 3000; i++) {
+                        if (!added.isEmpty() && random.nextInt(3) == 0) {
+                                model.removeTransaction(added.remove(random.nextInt(added.size())).getId());
+                        } else {
+                                Transaction t = new Transaction(1 + random.nextInt(50000) / 100.0,
+                                                categories[random.nextInt(categories.length)]);
+                                model.addTransaction(t);
+                                added.add(t);
+                        }
+                }
+
+                // Check the post-conditions against a scan of the transactions
+                TransactionSnapshot transactions = model.getTransactions();
+                TransactionSummary summary = model.getSummary();
+                assertEquals(transactions.size(), summary.getCount());
+                assertEquals(transactions.sumAmountCents(), summary.getTotalCents());
+                for (String category : categories) {
+                        long total = 0;
+                        long min = Long.MAX_VALUE;
+                        long max = 0;
+                        int count = 0;
+                        for (Transaction t : transactions) {
+                                if (t.getCategory().equals(category)) {
+                                        total += t.getAmountCents();
+                                        min = Math.min(min, t.getAmountCents());
+                                        max = Math.max(max, t.getAmountCents());
+                                        count++;
+                                }
+                        }
+                        assertEquals(count, summary.getCategory(category).getCount());
+                        assertEquals(total, summary.getCategory(category).getTotalCents());
+                        assertEquals(min, summary.getCategory(category).getMinCents());
+                        assertEquals(max, summary.getCategory(category).getMaxCents());
+                }
+        }
+
+        @Test
+        public void testRollbackRestoresSummary() {
+                // Setup
+                model.addTransaction(new Transaction(10, "food"));
+
+                // Call the unit under test
+                model.beginBatch();
+                model.addTransaction(new Transaction(1000, "travel"));
+                model.rollbackBatch();
+
+                // Check the post-conditions
+                TransactionSummary summary = model.getSummary();
+                assertEquals(1, summary.getCount());
+                assertEquals(1000, summary.getTotalCents());
+                assertEquals(0, summary.getCategory("travel").getCount());
+        }
+}